@@ -0,0 +1,19 @@
+package lox;
+
+import java.util.Arrays;
+import java.util.List;
+
+public class BenchmarkMain {
+
+  // 별도 프로파일러를 지정하지 않으면 GC 프로파일러로 할당률을 함께 보고한다
+  public static void main(String[] args) throws Exception {
+    List<String> options = Arrays.asList(args);
+    if (!options.contains("-prof")) {
+      String[] withGc = Arrays.copyOf(args, args.length + 2);
+      withGc[args.length] = "-prof";
+      withGc[args.length + 1] = "gc";
+      args = withGc;
+    }
+    org.openjdk.jmh.Main.main(args);
+  }
+}
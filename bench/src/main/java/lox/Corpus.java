@@ -0,0 +1,33 @@
+package lox;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+
+final class Corpus {
+
+  private Corpus() {
+  }
+
+  static String load(String program) {
+    String path = "/corpus/" + program + ".lox";
+    try (InputStream input = Corpus.class.getResourceAsStream(path)) {
+      if (input == null) {
+        throw new IllegalArgumentException("No corpus program '" + program + "'.");
+      }
+      return new String(input.readAllBytes(), StandardCharsets.UTF_8);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  // 벤치마크 중 print 출력이 측정을 흐리지 않도록 버린다
+  static PrintStream silenceStdout() {
+    PrintStream original = System.out;
+    System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+    return original;
+  }
+}
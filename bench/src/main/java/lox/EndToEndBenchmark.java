@@ -0,0 +1,64 @@
+package lox;
+
+import java.io.PrintStream;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class EndToEndBenchmark {
+
+  @Param({"fib", "binary_trees", "string_building", "method_dispatch", "closures", "field_loop",
+      "numeric_list"})
+  public String program;
+
+  @Param({"tree", "vm"})
+  public String engine;
+
+  private String source;
+  private Interpreter interpreter;
+  private VM vm;
+  private PrintStream stdout;
+
+  @Setup
+  public void setup() {
+    // 인터프리터는 만들 때의 System.out 을 붙잡으므로 먼저 출력을 막는다
+    stdout = Corpus.silenceStdout();
+    source = Corpus.load(program);
+    interpreter = new Interpreter();
+    vm = new VM();
+  }
+
+  @TearDown
+  public void tearDown() {
+    System.setOut(stdout);
+  }
+
+  @Benchmark
+  public void run() {
+    List<Stmt> statements = new Parser(new Scanner(source).scanTokens()).parse();
+    new Resolver().resolve(statements);
+    statements = new Optimizer().optimize(statements);
+    if (engine.equals("vm")) {
+      vm.interpret(new Compiler().compile(statements));
+    } else {
+      interpreter.interpret(statements);
+    }
+  }
+}
@@ -0,0 +1,65 @@
+package lox;
+
+import java.io.PrintStream;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ExecutionBenchmark {
+
+  @Param({"fib", "binary_trees", "string_building", "method_dispatch", "closures", "field_loop",
+      "numeric_list"})
+  public String program;
+
+  @Param({"tree", "jit", "vm"})
+  public String engine;
+
+  private List<Stmt> statements;
+  private Obj.Function script;
+  private Interpreter interpreter;
+  private VM vm;
+  private PrintStream stdout;
+
+  @Setup
+  public void setup() {
+    stdout = Corpus.silenceStdout();
+    statements = new Parser(new Scanner(Corpus.load(program)).scanTokens()).parse();
+    new Resolver().resolve(statements);
+    statements = new Optimizer().optimize(statements);
+    script = new Compiler().compile(statements);
+    interpreter = new Interpreter();
+    interpreter.jit = engine.equals("jit");
+    vm = new VM();
+  }
+
+  @TearDown
+  public void tearDown() {
+    System.setOut(stdout);
+  }
+
+  @Benchmark
+  public void execute() {
+    if (engine.equals("vm")) {
+      vm.interpret(script);
+    } else {
+      interpreter.interpret(statements);
+    }
+  }
+}
@@ -0,0 +1,55 @@
+package lox;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+// 모든 코어에서 스크립트마다 새 isolate 를 만들어 돌린다. 단일 스레드 점수와 비교해 확장성을 본다
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(Threads.MAX)
+@State(Scope.Benchmark)
+public class IsolateBenchmark {
+
+  @Param({"fib", "binary_trees", "method_dispatch", "closures"})
+  public String program;
+
+  private String source;
+  private LoxEngine engine;
+  private PreparedScript script;
+  private PrintStream discard;
+
+  @Setup
+  public void setup() {
+    source = Corpus.load(program);
+    engine = new LoxEngine(false, true, false);
+    script = engine.prepare(source);
+    discard = new PrintStream(OutputStream.nullOutputStream());
+  }
+
+  @Benchmark
+  public Isolate.Status run() {
+    return engine.newIsolate(discard, discard).run(source);
+  }
+
+  // 프런트엔드는 setup 에서 한 번만 거치고 모든 스레드가 같은 스크립트를 실행한다
+  @Benchmark
+  public Isolate.Status runPrepared() {
+    return engine.newIsolate(discard, discard).run(script);
+  }
+}
@@ -0,0 +1,144 @@
+package lox;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.StandardSocketOptions;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+// jlox --serve 로 띄운 서버에 말뭉치 스크립트를 묶음으로 보내 처리량과 지연을 잰다.
+//   java -cp target/benchmarks.jar lox.LoadGenerator 7777 --connections 8 --batch 16
+public class LoadGenerator {
+
+  private static final class Result {
+
+    final List<Long> latencies = new ArrayList<>();
+    final Map<Integer, Integer> statuses = new TreeMap<>();
+    int requests = 0;
+  }
+
+  public static void main(String[] args) throws Exception {
+    if (args.length == 0) {
+      System.out.println("Usage: LoadGenerator port|socket-path [--connections n] [--batch n]"
+          + " [--seconds n] [--timeout millis] [--programs a,b,...]");
+      System.exit(64);
+    }
+    String address = args[0];
+    int connections = Integer.parseInt(option(args, "--connections", "4"));
+    int batch = Integer.parseInt(option(args, "--batch", "8"));
+    int seconds = Integer.parseInt(option(args, "--seconds", "10"));
+    int timeout = Integer.parseInt(option(args, "--timeout", "0"));
+    List<String> programs = Arrays.asList(option(args, "--programs",
+        "fib,binary_trees,string_building,method_dispatch,closures,field_loop,numeric_list")
+        .split(","));
+    List<String> sources = new ArrayList<>();
+    for (String program : programs) {
+      sources.add(Corpus.load(program));
+    }
+
+    long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+    ExecutorService pool = Executors.newFixedThreadPool(connections);
+    List<Future<Result>> futures = new ArrayList<>();
+    for (int i = 0; i < connections; i++) {
+      int offset = i;
+      futures.add(pool.submit(() -> drive(address, sources, offset, batch, timeout, end)));
+    }
+
+    Result total = new Result();
+    for (Future<Result> future : futures) {
+      Result result = future.get();
+      total.latencies.addAll(result.latencies);
+      total.requests += result.requests;
+      result.statuses.forEach((status, count) -> total.statuses.merge(status, count, Integer::sum));
+    }
+    pool.shutdown();
+
+    total.latencies.sort(null);
+    System.out.printf("requests   %d (%.1f/s)%n", total.requests, total.requests / (double) seconds);
+    System.out.printf("batches    %d of %d%n", total.latencies.size(), batch);
+    System.out.printf("latency    p50 %.2f ms, p90 %.2f ms, p99 %.2f ms, max %.2f ms%n",
+        percentile(total.latencies, 0.50), percentile(total.latencies, 0.90),
+        percentile(total.latencies, 0.99), percentile(total.latencies, 1.0));
+    System.out.println("statuses   " + total.statuses);
+  }
+
+  // 연결 하나로 끝날 때까지 묶음을 보내고 받는다. 연결마다 시작 스크립트를 달리해 고르게 섞는다
+  private static Result drive(String address, List<String> sources, int offset, int batch,
+      int timeout, long end) throws IOException {
+    Result result = new Result();
+    try (SocketChannel channel = connect(address)) {
+      DataInputStream input = new DataInputStream(
+          new BufferedInputStream(Channels.newInputStream(channel)));
+      DataOutputStream output = new DataOutputStream(
+          new BufferedOutputStream(Channels.newOutputStream(channel)));
+      int next = offset;
+      while (System.nanoTime() < end) {
+        long start = System.nanoTime();
+        output.writeInt(batch);
+        for (int i = 0; i < batch; i++) {
+          output.writeInt(timeout);
+          LoxServer.writeString(output, sources.get(next++ % sources.size()));
+          LoxServer.writeString(output, "");
+        }
+        output.flush();
+
+        for (int i = 0; i < batch; i++) {
+          int status = input.readInt();
+          LoxServer.readString(input);
+          LoxServer.readString(input);
+          result.statuses.merge(status, 1, Integer::sum);
+        }
+        result.latencies.add(System.nanoTime() - start);
+        result.requests += batch;
+      }
+      output.writeInt(0);
+      output.flush();
+    }
+    return result;
+  }
+
+  private static SocketChannel connect(String address) throws IOException {
+    if (address.chars().allMatch(Character::isDigit)) {
+      SocketChannel channel = SocketChannel.open(
+          new InetSocketAddress(InetAddress.getLoopbackAddress(), Integer.parseInt(address)));
+      channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+      return channel;
+    }
+    SocketChannel channel = SocketChannel.open(StandardProtocolFamily.UNIX);
+    channel.connect(UnixDomainSocketAddress.of(address));
+    return channel;
+  }
+
+  private static double percentile(List<Long> sorted, double fraction) {
+    if (sorted.isEmpty()) {
+      return 0;
+    }
+    int index = (int) Math.min(sorted.size() - 1, Math.ceil(fraction * sorted.size()) - 1);
+    return sorted.get(Math.max(0, index)) / 1e6;
+  }
+
+  private static String option(String[] args, String name, String fallback) {
+    for (int i = 1; i < args.length - 1; i++) {
+      if (args[i].equals(name)) {
+        return args[i + 1];
+      }
+    }
+    return fallback;
+  }
+}
@@ -0,0 +1,78 @@
+package lox;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PhaseBenchmark {
+
+  @Param({"fib", "binary_trees", "string_building", "method_dispatch", "closures", "field_loop",
+      "numeric_list"})
+  public String program;
+
+  private String source;
+  private ByteBuffer bytes;
+  private List<Token> tokens;
+  private List<Stmt> statements;
+
+  @Setup
+  public void setup() {
+    source = Corpus.load(program);
+    byte[] encoded = source.getBytes(StandardCharsets.UTF_8);
+    bytes = ByteBuffer.allocateDirect(encoded.length).put(encoded).flip();
+    tokens = new Scanner(source).scanTokens();
+    statements = new Parser(tokens).parse();
+    new Resolver().resolve(statements);
+    statements = new Optimizer().optimize(statements);
+  }
+
+  @Benchmark
+  public Object scan() {
+    return new Scanner(source).scanTokens();
+  }
+
+  @Benchmark
+  public Object scanBuffer() {
+    return new Scanner(bytes, StandardCharsets.UTF_8).scanTokens();
+  }
+
+  @Benchmark
+  public Object parse() {
+    return new Parser(tokens).parse();
+  }
+
+  @Benchmark
+  public Object resolve() {
+    Resolver resolver = new Resolver();
+    resolver.resolve(statements);
+    return resolver;
+  }
+
+  @Benchmark
+  public Object optimize() {
+    return new Optimizer().optimize(statements);
+  }
+
+  @Benchmark
+  public Object compile() {
+    return new Compiler().compile(statements);
+  }
+}
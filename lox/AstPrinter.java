@@ -21,6 +21,16 @@ public class AstPrinter implements Expr.Visitor<String> {
 		return null;
 	}
 
+	@Override
+	public String visitGetIndexExpr(Expr.GetIndex expr) {
+		return null;
+	}
+
+	@Override
+	public String visitSetIndexExpr(Expr.SetIndex expr) {
+		return null;
+	}
+
 	@Override
 	public String visitThisExpr(Expr.This expr) {
 		return null;
@@ -28,7 +38,7 @@ public class AstPrinter implements Expr.Visitor<String> {
 
 	@Override
 	public String visitBinaryExpr(Expr.Binary expr) {
-		return parenthesize(expr.operator.lexeme, expr.left, expr.right);
+		return parenthesize(expr.operator.lexeme(), expr.left, expr.right);
 	}
 
 	@Override
@@ -51,7 +61,7 @@ public class AstPrinter implements Expr.Visitor<String> {
 
 	@Override
 	public String visitUnaryExpr(Expr.Unary expr) {
-		return parenthesize(expr.operator.lexeme, expr.right);
+		return parenthesize(expr.operator.lexeme(), expr.right);
 	}
 
 	@Override
@@ -64,6 +74,11 @@ public class AstPrinter implements Expr.Visitor<String> {
 		return "";
 	}
 
+	@Override
+	public String visitSuperExpr(Expr.Super expr) {
+		return null;
+	}
+
 	private String parenthesize(String name, Expr... exprs) {
 		StringBuilder builder = new StringBuilder();
 
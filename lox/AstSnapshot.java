@@ -0,0 +1,669 @@
+package lox;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.nio.file.attribute.UserPrincipal;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// 리졸브까지 끝난 구문 트리를 소스 해시로 캐시해 다음 실행에서 프런트엔드를 건너뛴다
+final class AstSnapshot {
+
+  private static final int MAGIC = 0x4c4f5841;
+  // 트리 모양이나 리졸버가 채우는 필드가 바뀌면 올린다
+  private static final int VERSION = 5;
+
+  private static final String USER = System.getProperty("user.name");
+  // 임시 디렉터리는 여러 사용자가 함께 쓰므로 사용자마다 따로 둔다
+  private static final Path DIRECTORY = Paths.get(System.getProperty("lox.cache.dir",
+      Paths.get(System.getProperty("java.io.tmpdir"),
+          "lox-cache-" + USER.replaceAll("[^A-Za-z0-9._-]", "_")).toString()));
+
+  private static final TokenType[] TOKEN_TYPES = TokenType.values();
+
+  private AstSnapshot() {
+  }
+
+  // 문자열 리터럴은 스캐너가 charset 으로 풀어 둔 값이므로 charset 도 캐시 키에 든다
+  static PreparedScript load(ByteBuffer source, Charset charset) {
+    Path path = pathFor(source, charset);
+    if (!Files.isRegularFile(path) || !trusted()) {
+      return null;
+    }
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+      return new Reader(buffer).read();
+    } catch (IOException | RuntimeException e) {
+      return null;
+    }
+  }
+
+  // 캐시는 최선을 다할 뿐이므로 쓰기에 실패해도 실행에는 영향이 없다
+  static void store(ByteBuffer source, Charset charset, PreparedScript script) {
+    Path path = pathFor(source, charset);
+    try {
+      if (posix()) {
+        Files.createDirectories(DIRECTORY,
+            PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rwx------")));
+      } else {
+        Files.createDirectories(DIRECTORY);
+      }
+      if (!trusted()) {
+        return;
+      }
+      Path temp = Files.createTempFile(DIRECTORY, "snapshot", ".tmp");
+      Files.write(temp, new Writer().write(script));
+      Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING,
+          StandardCopyOption.ATOMIC_MOVE);
+    } catch (IOException e) {
+      // 무시한다
+    }
+  }
+
+  // 다른 사용자가 먼저 만든 디렉터리라면 실행할 트리를 심어 두었을 수 있다. 이 사용자가 가졌고
+  // 다른 사람이 쓸 수 없는 디렉터리만 믿는다
+  private static boolean trusted() {
+    try {
+      if (!Files.isDirectory(DIRECTORY, LinkOption.NOFOLLOW_LINKS)) {
+        return false;
+      }
+      UserPrincipal owner = Files.getOwner(DIRECTORY, LinkOption.NOFOLLOW_LINKS);
+      UserPrincipal user = DIRECTORY.getFileSystem().getUserPrincipalLookupService()
+          .lookupPrincipalByName(USER);
+      if (!owner.equals(user)) {
+        return false;
+      }
+      if (posix()) {
+        Set<PosixFilePermission> permissions =
+            Files.getPosixFilePermissions(DIRECTORY, LinkOption.NOFOLLOW_LINKS);
+        return !permissions.contains(PosixFilePermission.GROUP_WRITE)
+            && !permissions.contains(PosixFilePermission.OTHERS_WRITE);
+      }
+      return true;
+    } catch (IOException | UnsupportedOperationException e) {
+      return false;
+    }
+  }
+
+  private static boolean posix() {
+    return DIRECTORY.getFileSystem().supportedFileAttributeViews().contains("posix");
+  }
+
+  private static Path pathFor(ByteBuffer source, Charset charset) {
+    try {
+      MessageDigest sha = MessageDigest.getInstance("SHA-256");
+      sha.update(charset.name().getBytes(StandardCharsets.UTF_8));
+      sha.update((byte) 0);
+      sha.update(source.duplicate().clear());
+      byte[] digest = sha.digest();
+      StringBuilder name = new StringBuilder();
+      for (byte b : digest) {
+        name.append(String.format("%02x", b));
+      }
+      return DIRECTORY.resolve(name + ".ast");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private static final class Writer implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
+
+    private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    private final Map<String, Integer> strings = new HashMap<>();
+
+    byte[] write(PreparedScript script) {
+      fixed(MAGIC, 4);
+      fixed(VERSION, 4);
+      varint(script.cacheSites);
+      statements(script.statements);
+      return bytes.toByteArray();
+    }
+
+    private void statements(List<? extends Stmt> statements) {
+      varint(statements.size());
+      for (Stmt statement : statements) {
+        statement.accept(this);
+      }
+    }
+
+    private void stmt(Stmt stmt) {
+      if (stmt == null) {
+        tag(0);
+        return;
+      }
+      stmt.accept(this);
+    }
+
+    private void expr(Expr expr) {
+      if (expr == null) {
+        tag(0);
+        return;
+      }
+      expr.accept(this);
+    }
+
+    private void token(Token token) {
+      varint(token.type.ordinal());
+      string(token.lexeme());
+      value(token.literal);
+      varint(token.line);
+    }
+
+    private void value(Object value) {
+      if (value == null) {
+        bytes.write(0);
+      } else if (value instanceof Boolean) {
+        bytes.write((boolean) value ? 1 : 2);
+      } else if (value instanceof Double) {
+        bytes.write(3);
+        fixed(Double.doubleToRawLongBits((double) value), 8);
+      } else {
+        bytes.write(4);
+        string((String) value);
+      }
+    }
+
+    // ByteBuffer 의 기본 바이트 순서인 빅 엔디언으로 쓴다
+    private void fixed(long value, int size) {
+      for (int shift = (size - 1) * 8; shift >= 0; shift -= 8) {
+        bytes.write((int) (value >>> shift));
+      }
+    }
+
+    // 처음 나온 문자열만 본문을 쓰고 이후에는 번호만 쓴다
+    private void string(String value) {
+      Integer index = strings.get(value);
+      if (index != null) {
+        varint(index);
+        return;
+      }
+      varint(strings.size());
+      strings.put(value, strings.size());
+      byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+      varint(utf8.length);
+      bytes.write(utf8, 0, utf8.length);
+    }
+
+    private void tag(int tag) {
+      varint(tag);
+    }
+
+    // -1 을 쓰는 depth, slot 도 한 바이트에 담도록 1 을 더해 쓴다
+    private void signed(int value) {
+      varint(value + 1);
+    }
+
+    private void varint(int value) {
+      while ((value & ~0x7f) != 0) {
+        bytes.write((value & 0x7f) | 0x80);
+        value >>>= 7;
+      }
+      bytes.write(value);
+    }
+
+    @Override
+    public Void visitAssignExpr(Expr.Assign expr) {
+      tag(1);
+      token(expr.name);
+      expr(expr.value);
+      signed(expr.depth);
+      signed(expr.slot);
+      return null;
+    }
+
+    @Override
+    public Void visitBinaryExpr(Expr.Binary expr) {
+      tag(2);
+      expr(expr.left);
+      token(expr.operator);
+      expr(expr.right);
+      return null;
+    }
+
+    @Override
+    public Void visitCallExpr(Expr.Call expr) {
+      tag(3);
+      expr(expr.callee);
+      token(expr.paren);
+      varint(expr.arguments.size());
+      for (Expr argument : expr.arguments) {
+        expr(argument);
+      }
+      signed(expr.cacheSlot);
+      return null;
+    }
+
+    @Override
+    public Void visitGetExpr(Expr.Get expr) {
+      tag(4);
+      expr(expr.object);
+      token(expr.name);
+      signed(expr.cacheSlot);
+      return null;
+    }
+
+    @Override
+    public Void visitGroupingExpr(Expr.Grouping expr) {
+      tag(5);
+      expr(expr.expression);
+      return null;
+    }
+
+    @Override
+    public Void visitLiteralExpr(Expr.Literal expr) {
+      tag(6);
+      value(expr.value);
+      return null;
+    }
+
+    @Override
+    public Void visitLogicalExpr(Expr.Logical expr) {
+      tag(7);
+      expr(expr.left);
+      token(expr.operator);
+      expr(expr.right);
+      return null;
+    }
+
+    @Override
+    public Void visitSetExpr(Expr.Set expr) {
+      tag(8);
+      expr(expr.object);
+      token(expr.name);
+      expr(expr.value);
+      signed(expr.cacheSlot);
+      return null;
+    }
+
+    @Override
+    public Void visitSuperExpr(Expr.Super expr) {
+      tag(9);
+      token(expr.keyword);
+      token(expr.method);
+      signed(expr.depth);
+      signed(expr.slot);
+      return null;
+    }
+
+    @Override
+    public Void visitThisExpr(Expr.This expr) {
+      tag(10);
+      token(expr.keyword);
+      signed(expr.depth);
+      signed(expr.slot);
+      return null;
+    }
+
+    @Override
+    public Void visitUnaryExpr(Expr.Unary expr) {
+      tag(11);
+      token(expr.operator);
+      expr(expr.right);
+      return null;
+    }
+
+    @Override
+    public Void visitVariableExpr(Expr.Variable expr) {
+      tag(12);
+      token(expr.name);
+      signed(expr.depth);
+      signed(expr.slot);
+      return null;
+    }
+
+    @Override
+    public Void visitGetIndexExpr(Expr.GetIndex expr) {
+      tag(13);
+      expr(expr.object);
+      token(expr.bracket);
+      expr(expr.index);
+      return null;
+    }
+
+    @Override
+    public Void visitSetIndexExpr(Expr.SetIndex expr) {
+      tag(14);
+      expr(expr.object);
+      token(expr.bracket);
+      expr(expr.index);
+      expr(expr.value);
+      return null;
+    }
+
+    @Override
+    public Void visitBlockStmt(Stmt.Block stmt) {
+      tag(1);
+      statements(stmt.statements);
+      varint(stmt.localCount);
+      varint(stmt.flat ? 1 : 0);
+      return null;
+    }
+
+    @Override
+    public Void visitClassStmt(Stmt.Class stmt) {
+      tag(2);
+      token(stmt.name);
+      expr(stmt.superclass);
+      statements(stmt.methods);
+      signed(stmt.slot);
+      return null;
+    }
+
+    @Override
+    public Void visitExpressionStmt(Stmt.Expression stmt) {
+      tag(3);
+      expr(stmt.expression);
+      return null;
+    }
+
+    @Override
+    public Void visitFunctionStmt(Stmt.Function stmt) {
+      tag(4);
+      token(stmt.name);
+      varint(stmt.params.size());
+      for (Token param : stmt.params) {
+        token(param);
+      }
+      statements(stmt.body);
+      signed(stmt.slot);
+      varint(stmt.localCount);
+      return null;
+    }
+
+    @Override
+    public Void visitIfStmt(Stmt.If stmt) {
+      tag(5);
+      expr(stmt.condition);
+      stmt(stmt.thenBranch);
+      stmt(stmt.elseBranch);
+      return null;
+    }
+
+    @Override
+    public Void visitPrintStmt(Stmt.Print stmt) {
+      tag(6);
+      expr(stmt.expression);
+      return null;
+    }
+
+    @Override
+    public Void visitReturnStmt(Stmt.Return stmt) {
+      tag(7);
+      token(stmt.keyword);
+      expr(stmt.value);
+      return null;
+    }
+
+    @Override
+    public Void visitVarStmt(Stmt.Var stmt) {
+      tag(8);
+      token(stmt.name);
+      expr(stmt.initializer);
+      signed(stmt.slot);
+      return null;
+    }
+
+    @Override
+    public Void visitWhileStmt(Stmt.While stmt) {
+      tag(9);
+      expr(stmt.condition);
+      stmt(stmt.body);
+      return null;
+    }
+  }
+
+  private static final class Reader {
+
+    private final ByteBuffer in;
+    private final List<String> strings = new ArrayList<>();
+
+    Reader(ByteBuffer in) {
+      this.in = in;
+    }
+
+    PreparedScript read() {
+      if (in.getInt() != MAGIC || in.getInt() != VERSION) {
+        return null;
+      }
+      int cacheSites = count();
+      List<Stmt> statements = statements();
+      if (in.hasRemaining()) {
+        return null;
+      }
+      return new PreparedScript(statements, cacheSites, null);
+    }
+
+    private List<Stmt> statements() {
+      int count = count();
+      List<Stmt> statements = new ArrayList<>(count);
+      for (int i = 0; i < count; i++) {
+        statements.add(stmt());
+      }
+      return statements;
+    }
+
+    private Token token() {
+      TokenType type = TOKEN_TYPES[varint()];
+      String lexeme = string();
+      Object literal = value();
+      if (type == TokenType.IDENTIFIER || type == TokenType.THIS || type == TokenType.SUPER) {
+        return new Token(type, Symbol.of(lexeme), varint());
+      }
+      return new Token(type, lexeme, literal, varint());
+    }
+
+    private Object value() {
+      switch (in.get()) {
+        case 0 -> {
+          return null;
+        }
+        case 1 -> {
+          return true;
+        }
+        case 2 -> {
+          return false;
+        }
+        case 3 -> {
+          return in.getDouble();
+        }
+        case 4 -> {
+          return string();
+        }
+        default -> throw new IllegalArgumentException("Bad value tag.");
+      }
+    }
+
+    private String string() {
+      int index = varint();
+      if (index < strings.size()) {
+        return strings.get(index);
+      }
+      byte[] utf8 = new byte[count()];
+      in.get(utf8);
+      String value = new String(utf8, StandardCharsets.UTF_8);
+      strings.add(value);
+      return value;
+    }
+
+    private int signed() {
+      return varint() - 1;
+    }
+
+    // 목록의 원소, 문자열의 바이트, 캐시 번호는 모두 뒤에서 한 바이트 이상을 차지하므로 남은
+    // 바이트보다 큰 개수는 망가진 파일이다. 배열을 만들기 전에 걸러 캐시를 놓친 것으로 친다.
+    // 지역 변수 개수는 본문 뒤에 오므로 선언이 있을 수 있는 파일 전체 크기로 제한한다
+    private int count() {
+      return count(in.remaining());
+    }
+
+    private int count(int limit) {
+      int count = varint();
+      if (count < 0 || count > limit) {
+        throw new IllegalArgumentException("Bad count.");
+      }
+      return count;
+    }
+
+    private int varint() {
+      int value = 0;
+      for (int shift = 0; ; shift += 7) {
+        byte b = in.get();
+        value |= (b & 0x7f) << shift;
+        if ((b & 0x80) == 0) {
+          return value;
+        }
+      }
+    }
+
+    private Expr expr() {
+      switch (varint()) {
+        case 0 -> {
+          return null;
+        }
+        case 1 -> {
+          Expr.Assign expr = new Expr.Assign(token(), expr());
+          expr.depth = signed();
+          expr.slot = signed();
+          return expr;
+        }
+        case 2 -> {
+          return new Expr.Binary(expr(), token(), expr());
+        }
+        case 3 -> {
+          Expr callee = expr();
+          Token paren = token();
+          int count = count();
+          List<Expr> arguments = new ArrayList<>(count);
+          for (int i = 0; i < count; i++) {
+            arguments.add(expr());
+          }
+          Expr.Call expr = new Expr.Call(callee, paren, arguments);
+          expr.cacheSlot = signed();
+          return expr;
+        }
+        case 4 -> {
+          Expr.Get expr = new Expr.Get(expr(), token());
+          expr.cacheSlot = signed();
+          return expr;
+        }
+        case 5 -> {
+          return new Expr.Grouping(expr());
+        }
+        case 6 -> {
+          return new Expr.Literal(value());
+        }
+        case 7 -> {
+          return new Expr.Logical(expr(), token(), expr());
+        }
+        case 8 -> {
+          Expr.Set expr = new Expr.Set(expr(), token(), expr());
+          expr.cacheSlot = signed();
+          return expr;
+        }
+        case 9 -> {
+          Expr.Super expr = new Expr.Super(token(), token());
+          expr.depth = signed();
+          expr.slot = signed();
+          return expr;
+        }
+        case 10 -> {
+          Expr.This expr = new Expr.This(token());
+          expr.depth = signed();
+          expr.slot = signed();
+          return expr;
+        }
+        case 11 -> {
+          return new Expr.Unary(token(), expr());
+        }
+        case 12 -> {
+          Expr.Variable expr = new Expr.Variable(token());
+          expr.depth = signed();
+          expr.slot = signed();
+          return expr;
+        }
+        case 13 -> {
+          return new Expr.GetIndex(expr(), token(), expr());
+        }
+        case 14 -> {
+          return new Expr.SetIndex(expr(), token(), expr(), expr());
+        }
+        default -> throw new IllegalArgumentException("Bad expression tag.");
+      }
+    }
+
+    private Stmt stmt() {
+      switch (varint()) {
+        case 0 -> {
+          return null;
+        }
+        case 1 -> {
+          Stmt.Block stmt = new Stmt.Block(statements());
+          stmt.localCount = count(in.limit());
+          stmt.flat = varint() == 1;
+          return stmt;
+        }
+        case 2 -> {
+          Token name = token();
+          Expr.Variable superclass = (Expr.Variable) expr();
+          List<Stmt.Function> methods = new ArrayList<>();
+          for (Stmt method : statements()) {
+            methods.add((Stmt.Function) method);
+          }
+          Stmt.Class stmt = new Stmt.Class(name, superclass, methods);
+          stmt.slot = signed();
+          return stmt;
+        }
+        case 3 -> {
+          return new Stmt.Expression(expr());
+        }
+        case 4 -> {
+          Token name = token();
+          int count = count();
+          List<Token> params = new ArrayList<>(count);
+          for (int i = 0; i < count; i++) {
+            params.add(token());
+          }
+          Stmt.Function stmt = new Stmt.Function(name, params, statements());
+          stmt.slot = signed();
+          stmt.localCount = count(in.limit());
+          return stmt;
+        }
+        case 5 -> {
+          return new Stmt.If(expr(), stmt(), stmt());
+        }
+        case 6 -> {
+          return new Stmt.Print(expr());
+        }
+        case 7 -> {
+          return new Stmt.Return(token(), expr());
+        }
+        case 8 -> {
+          Stmt.Var stmt = new Stmt.Var(token(), expr());
+          stmt.slot = signed();
+          return stmt;
+        }
+        case 9 -> {
+          return new Stmt.While(expr(), stmt());
+        }
+        default -> throw new IllegalArgumentException("Bad statement tag.");
+      }
+    }
+  }
+}
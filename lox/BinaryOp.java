@@ -0,0 +1,215 @@
+package lox;
+
+// Binary 노드가 관찰한 피연산자 타입에 맞춰 스스로 교체하는 실행 전략
+abstract class BinaryOp {
+
+  static final BinaryOp UNINITIALIZED = new Uninitialized();
+
+  abstract Object execute(Expr.Binary node, Object left, Object right);
+
+  private static final class Uninitialized extends BinaryOp {
+
+    @Override
+    Object execute(Expr.Binary node, Object left, Object right) {
+      BinaryOp specialized = specialize(node.operator.type, left, right);
+      node.op = specialized;
+      return specialized.execute(node, left, right);
+    }
+
+    private static BinaryOp specialize(TokenType type, Object left, Object right) {
+      if (left instanceof Double && right instanceof Double) {
+        switch (type) {
+          case PLUS -> {
+            return new DoubleAdd();
+          }
+          case MINUS -> {
+            return new DoubleSubtract();
+          }
+          case STAR -> {
+            return new DoubleMultiply();
+          }
+          case SLASH -> {
+            return new DoubleDivide();
+          }
+          case GREATER -> {
+            return new DoubleGreater();
+          }
+          case GREATER_EQUAL -> {
+            return new DoubleGreaterEqual();
+          }
+          case LESS -> {
+            return new DoubleLess();
+          }
+          case LESS_EQUAL -> {
+            return new DoubleLessEqual();
+          }
+          default -> {
+            return Generic.INSTANCE;
+          }
+        }
+      }
+
+      if (type == TokenType.PLUS && left instanceof String && right instanceof String) {
+        return new StringConcat();
+      }
+      return Generic.INSTANCE;
+    }
+  }
+
+  private abstract static class DoubleOp extends BinaryOp {
+
+    @Override
+    final Object execute(Expr.Binary node, Object left, Object right) {
+      if (left instanceof Double && right instanceof Double) {
+        return apply((double) left, (double) right);
+      }
+      node.op = Generic.INSTANCE;
+      return Generic.INSTANCE.execute(node, left, right);
+    }
+
+    abstract Object apply(double left, double right);
+  }
+
+  private static final class DoubleAdd extends DoubleOp {
+
+    @Override
+    Object apply(double left, double right) {
+      return left + right;
+    }
+  }
+
+  private static final class DoubleSubtract extends DoubleOp {
+
+    @Override
+    Object apply(double left, double right) {
+      return left - right;
+    }
+  }
+
+  private static final class DoubleMultiply extends DoubleOp {
+
+    @Override
+    Object apply(double left, double right) {
+      return left * right;
+    }
+  }
+
+  private static final class DoubleDivide extends DoubleOp {
+
+    @Override
+    Object apply(double left, double right) {
+      return left / right;
+    }
+  }
+
+  private static final class DoubleGreater extends DoubleOp {
+
+    @Override
+    Object apply(double left, double right) {
+      return left > right;
+    }
+  }
+
+  private static final class DoubleGreaterEqual extends DoubleOp {
+
+    @Override
+    Object apply(double left, double right) {
+      return left >= right;
+    }
+  }
+
+  private static final class DoubleLess extends DoubleOp {
+
+    @Override
+    Object apply(double left, double right) {
+      return left < right;
+    }
+  }
+
+  private static final class DoubleLessEqual extends DoubleOp {
+
+    @Override
+    Object apply(double left, double right) {
+      return left <= right;
+    }
+  }
+
+  private static final class StringConcat extends BinaryOp {
+
+    @Override
+    Object execute(Expr.Binary node, Object left, Object right) {
+      if (left instanceof String && right instanceof String) {
+        return (String) left + right;
+      }
+      node.op = Generic.INSTANCE;
+      return Generic.INSTANCE.execute(node, left, right);
+    }
+  }
+
+  private static final class Generic extends BinaryOp {
+
+    static final Generic INSTANCE = new Generic();
+
+    @Override
+    Object execute(Expr.Binary node, Object left, Object right) {
+      Token operator = node.operator;
+      switch (operator.type) {
+        case GREATER -> {
+          checkNumberOperands(operator, left, right);
+          return (double) left > (double) right;
+        }
+        case GREATER_EQUAL -> {
+          checkNumberOperands(operator, left, right);
+          return (double) left >= (double) right;
+        }
+        case LESS -> {
+          checkNumberOperands(operator, left, right);
+          return (double) left < (double) right;
+        }
+        case LESS_EQUAL -> {
+          checkNumberOperands(operator, left, right);
+          return (double) left <= (double) right;
+        }
+        case BANG_EQUAL -> {
+          return !Interpreter.isEqual(left, right);
+        }
+        case EQUAL_EQUAL -> {
+          return Interpreter.isEqual(left, right);
+        }
+        case MINUS -> {
+          checkNumberOperands(operator, left, right);
+          return (double) left - (double) right;
+        }
+        case SLASH -> {
+          checkNumberOperands(operator, left, right);
+          return (double) left / (double) right;
+        }
+        case STAR -> {
+          checkNumberOperands(operator, left, right);
+          return (double) left * (double) right;
+        }
+        case PLUS -> {
+          if (left instanceof Double && right instanceof Double) {
+            return (double) left + (double) right;
+          }
+
+          if (left instanceof String && right instanceof String) {
+            return left + (String) right;
+          }
+
+          throw new RuntimeError(operator, "Operands must be two numbers or two strings");
+        }
+        default -> {
+          return null;
+        }
+      }
+    }
+
+    private static void checkNumberOperands(Token operator, Object left, Object right) {
+      if (left instanceof Double && right instanceof Double) {
+        return;
+      }
+      throw new RuntimeError(operator, "Operands must be numbers");
+    }
+  }
+}
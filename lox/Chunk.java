@@ -0,0 +1,62 @@
+package lox;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+class Chunk {
+
+  byte[] code = new byte[8];
+  int count = 0;
+
+  // (offset, line) 쌍으로, 줄이 바뀔 때만 기록한다
+  private int[] lines = new int[8];
+  private int lineCount = 0;
+
+  Object[] constants = new Object[8];
+  int constantCount = 0;
+  private final Map<Object, Integer> constantIndex = new HashMap<>();
+
+  void write(byte b, int line) {
+    if (count == code.length) {
+      code = Arrays.copyOf(code, count * 2);
+    }
+    if (lineCount == 0 || lines[lineCount - 1] != line) {
+      if (lineCount + 2 > lines.length) {
+        lines = Arrays.copyOf(lines, lines.length * 2);
+      }
+      lines[lineCount++] = count;
+      lines[lineCount++] = line;
+    }
+    code[count++] = b;
+  }
+
+  int addConstant(Object value) {
+    if (!(value instanceof Obj)) {
+      Integer index = constantIndex.get(value);
+      if (index != null) {
+        return index;
+      }
+      constantIndex.put(value, constantCount);
+    }
+    if (constantCount == constants.length) {
+      constants = Arrays.copyOf(constants, constantCount * 2);
+    }
+    constants[constantCount] = value;
+    return constantCount++;
+  }
+
+  int getLine(int offset) {
+    int line = 0;
+    for (int i = 0; i < lineCount && lines[i] <= offset; i += 2) {
+      line = lines[i + 1];
+    }
+    return line;
+  }
+
+  void trim() {
+    code = Arrays.copyOf(code, count);
+    lines = Arrays.copyOf(lines, lineCount);
+    constants = Arrays.copyOf(constants, constantCount);
+  }
+}
@@ -0,0 +1,364 @@
+package lox;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// 49 버전 클래스 파일은 StackMapTable 없이 타입 추론 검증기로 검증된다
+final class ClassFileWriter {
+
+  static final int ACC_PUBLIC = 0x0001;
+  static final int ACC_FINAL = 0x0010;
+  static final int ACC_SUPER = 0x0020;
+
+  static final int ACONST_NULL = 0x01;
+  static final int AALOAD = 0x32;
+  static final int AASTORE = 0x53;
+  static final int POP = 0x57;
+  static final int DUP = 0x59;
+  static final int DUP_X1 = 0x5a;
+  static final int IXOR = 0x82;
+  static final int IFEQ = 0x99;
+  static final int IFNE = 0x9a;
+  static final int GOTO = 0xa7;
+  static final int ARETURN = 0xb0;
+  static final int RETURN = 0xb1;
+  static final int IFNULL = 0xc6;
+  static final int IFNONNULL = 0xc7;
+
+  private static final int VERSION = 49;
+
+  private final ByteArrayOutputStream poolBytes = new ByteArrayOutputStream();
+  private final DataOutputStream pool = new DataOutputStream(poolBytes);
+  private final Map<String, Integer> poolIndex = new HashMap<>();
+  private int poolCount = 1;
+
+  private final int thisClass;
+  private final int superClass;
+  private final int codeName;
+  private final List<Code> methods = new ArrayList<>();
+
+  ClassFileWriter(String name, String superName) {
+    thisClass = classRef(name);
+    superClass = classRef(superName);
+    codeName = utf8("Code");
+  }
+
+  Code method(int access, String name, String descriptor) {
+    Code code = new Code(access, utf8(name), utf8(descriptor), argumentSlots(descriptor) + 1);
+    methods.add(code);
+    return code;
+  }
+
+  byte[] toByteArray() {
+    try {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      DataOutputStream out = new DataOutputStream(bytes);
+      out.writeInt(0xCAFEBABE);
+      out.writeShort(0);
+      out.writeShort(VERSION);
+      out.writeShort(poolCount);
+      poolBytes.writeTo(out);
+      out.writeShort(ACC_FINAL | ACC_SUPER);
+      out.writeShort(thisClass);
+      out.writeShort(superClass);
+      out.writeShort(0);
+      out.writeShort(0);
+      out.writeShort(methods.size());
+      for (Code method : methods) {
+        method.writeTo(out);
+      }
+      out.writeShort(0);
+      return bytes.toByteArray();
+    } catch (IOException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private int utf8(String value) {
+    return constant("U" + value, 1, out -> out.writeUTF(value));
+  }
+
+  private int classRef(String name) {
+    int index = utf8(name);
+    return constant("C" + name, 7, out -> out.writeShort(index));
+  }
+
+  private int string(String value) {
+    int index = utf8(value);
+    return constant("S" + value, 8, out -> out.writeShort(index));
+  }
+
+  private int memberRef(int tag, String owner, String name, String descriptor) {
+    int ownerIndex = classRef(owner);
+    int nameIndex = utf8(name);
+    int typeIndex = utf8(descriptor);
+    int nameAndType = constant("N" + name + ' ' + descriptor, 12, out -> {
+      out.writeShort(nameIndex);
+      out.writeShort(typeIndex);
+    });
+    return constant(tag + owner + '.' + name + ' ' + descriptor, tag, out -> {
+      out.writeShort(ownerIndex);
+      out.writeShort(nameAndType);
+    });
+  }
+
+  private interface Entry {
+
+    void write(DataOutputStream out) throws IOException;
+  }
+
+  private int constant(String key, int tag, Entry entry) {
+    Integer existing = poolIndex.get(key);
+    if (existing != null) {
+      return existing;
+    }
+    try {
+      pool.writeByte(tag);
+      entry.write(pool);
+    } catch (IOException e) {
+      throw new IllegalStateException(e);
+    }
+    int index = poolCount++;
+    poolIndex.put(key, index);
+    return index;
+  }
+
+  private static int argumentSlots(String descriptor) {
+    int slots = 0;
+    int i = 1;
+    while (descriptor.charAt(i) != ')') {
+      char c = descriptor.charAt(i);
+      if (c == 'J' || c == 'D') {
+        slots += 2;
+        i++;
+        continue;
+      }
+      while (c == '[') {
+        c = descriptor.charAt(++i);
+      }
+      if (c == 'L') {
+        i = descriptor.indexOf(';', i);
+      }
+      slots++;
+      i++;
+    }
+    return slots;
+  }
+
+  private static int returnSlots(String descriptor) {
+    char c = descriptor.charAt(descriptor.indexOf(')') + 1);
+    if (c == 'V') {
+      return 0;
+    }
+    return c == 'J' || c == 'D' ? 2 : 1;
+  }
+
+  static final class Label {
+
+    private int position = -1;
+    private int stack = -1;
+    private final List<Integer> jumps = new ArrayList<>();
+  }
+
+  final class Code {
+
+    private final int access;
+    private final int name;
+    private final int descriptor;
+    private byte[] code = new byte[256];
+    private int length = 0;
+    private int stack = 0;
+    private int maxStack = 0;
+    private int maxLocals;
+
+    private Code(int access, int name, int descriptor, int maxLocals) {
+      this.access = access;
+      this.name = name;
+      this.descriptor = descriptor;
+      this.maxLocals = maxLocals;
+    }
+
+    void op(int opcode, int stackDelta) {
+      emit(opcode);
+      adjust(stackDelta);
+    }
+
+    void aload(int local) {
+      local(0x19, 0x2a, local);
+      adjust(1);
+    }
+
+    void astore(int local) {
+      local(0x3a, 0x4b, local);
+      adjust(-1);
+    }
+
+    void iconst(int value) {
+      if (value >= -1 && value <= 5) {
+        emit(0x03 + value);
+      } else if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+        emit(0x10);
+        emit(value);
+      } else {
+        emit(0x11);
+        emitShort(value);
+      }
+      adjust(1);
+    }
+
+    void ldc(String value) {
+      int index = string(value);
+      if (index < 256) {
+        emit(0x12);
+        emit(index);
+      } else {
+        emit(0x13);
+        emitShort(index);
+      }
+      adjust(1);
+    }
+
+    void newObject(String type) {
+      emit(0xbb);
+      emitShort(classRef(type));
+      adjust(1);
+    }
+
+    void anewarray(String type) {
+      emit(0xbd);
+      emitShort(classRef(type));
+    }
+
+    void checkcast(String type) {
+      emit(0xc0);
+      emitShort(classRef(type));
+    }
+
+    void getfield(String owner, String name, String descriptor) {
+      emit(0xb4);
+      emitShort(memberRef(9, owner, name, descriptor));
+      adjust(returnSlots("()" + descriptor) - 1);
+    }
+
+    void getstatic(String owner, String name, String descriptor) {
+      emit(0xb2);
+      emitShort(memberRef(9, owner, name, descriptor));
+      adjust(returnSlots("()" + descriptor));
+    }
+
+    void invokestatic(String owner, String name, String descriptor) {
+      invoke(0xb8, 10, owner, name, descriptor, 0);
+    }
+
+    void invokespecial(String owner, String name, String descriptor) {
+      invoke(0xb7, 10, owner, name, descriptor, 1);
+    }
+
+    void invokevirtual(String owner, String name, String descriptor) {
+      invoke(0xb6, 10, owner, name, descriptor, 1);
+    }
+
+    void invokeinterface(String owner, String name, String descriptor) {
+      invoke(0xb9, 11, owner, name, descriptor, 1);
+      emit(argumentSlots(descriptor) + 1);
+      emit(0);
+    }
+
+    void jump(int opcode, Label label) {
+      int start = length;
+      emit(opcode);
+      emitShort(0);
+      adjust(opcode == GOTO ? 0 : -1);
+      label.stack = stack;
+      if (label.position >= 0) {
+        patch(start, label.position);
+      } else {
+        label.jumps.add(start);
+      }
+    }
+
+    // 점프해 들어오는 경로의 스택 깊이를 이어받는다
+    void mark(Label label) {
+      label.position = length;
+      if (label.stack >= 0) {
+        stack = label.stack;
+      }
+      for (int start : label.jumps) {
+        patch(start, label.position);
+      }
+      label.jumps.clear();
+    }
+
+    int length() {
+      return length;
+    }
+
+    private void invoke(int opcode, int tag, String owner, String name, String descriptor,
+        int receiver) {
+      emit(opcode);
+      emitShort(memberRef(tag, owner, name, descriptor));
+      adjust(returnSlots(descriptor) - argumentSlots(descriptor) - receiver);
+    }
+
+    private void local(int opcode, int shortOpcode, int local) {
+      if (local < 4) {
+        emit(shortOpcode + local);
+      } else if (local < 256) {
+        emit(opcode);
+        emit(local);
+      } else {
+        emit(0xc4);
+        emit(opcode);
+        emitShort(local);
+      }
+      maxLocals = Math.max(maxLocals, local + 1);
+    }
+
+    private void patch(int start, int target) {
+      int offset = target - start;
+      if (offset < Short.MIN_VALUE || offset > Short.MAX_VALUE) {
+        throw new IllegalStateException("Jump offset out of range.");
+      }
+      code[start + 1] = (byte) (offset >> 8);
+      code[start + 2] = (byte) offset;
+    }
+
+    private void adjust(int delta) {
+      stack += delta;
+      maxStack = Math.max(maxStack, stack);
+    }
+
+    private void emit(int value) {
+      if (length == code.length) {
+        code = Arrays.copyOf(code, length * 2);
+      }
+      code[length++] = (byte) value;
+    }
+
+    private void emitShort(int value) {
+      emit(value >> 8);
+      emit(value);
+    }
+
+    private void writeTo(DataOutputStream out) throws IOException {
+      out.writeShort(access);
+      out.writeShort(name);
+      out.writeShort(descriptor);
+      out.writeShort(1);
+      out.writeShort(codeName);
+      out.writeInt(12 + length);
+      out.writeShort(maxStack);
+      out.writeShort(maxLocals);
+      out.writeInt(length);
+      out.write(code, 0, length);
+      out.writeShort(0);
+      out.writeShort(0);
+    }
+  }
+}
@@ -0,0 +1,617 @@
+package lox;
+
+import static lox.OpCode.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+class Compiler implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
+
+  private static final int UINT8_COUNT = 256;
+  private static final int UINT16_MAX = 65535;
+
+  private enum FunctionType {
+    FUNCTION,
+    INITIALIZER,
+    METHOD,
+    SCRIPT
+  }
+
+  private static class Local {
+
+    final String name;
+    final int depth;
+    boolean isCaptured = false;
+
+    Local(String name, int depth) {
+      this.name = name;
+      this.depth = depth;
+    }
+  }
+
+  private static class Upvalue {
+
+    final int index;
+    final boolean isLocal;
+
+    Upvalue(int index, boolean isLocal) {
+      this.index = index;
+      this.isLocal = isLocal;
+    }
+  }
+
+  private static class FunctionState {
+
+    final FunctionState enclosing;
+    final Obj.Function function;
+    final FunctionType type;
+    final List<Local> locals = new ArrayList<>();
+    final List<Upvalue> upvalues = new ArrayList<>();
+    int scopeDepth = 0;
+
+    FunctionState(FunctionState enclosing, Obj.Function function, FunctionType type) {
+      this.enclosing = enclosing;
+      this.function = function;
+      this.type = type;
+      locals.add(new Local(type == FunctionType.FUNCTION || type == FunctionType.SCRIPT
+          ? "" : "this", 0));
+    }
+  }
+
+  private static class ClassState {
+
+    final ClassState enclosing;
+    boolean hasSuperclass = false;
+
+    ClassState(ClassState enclosing) {
+      this.enclosing = enclosing;
+    }
+  }
+
+  private final Diagnostics diagnostics;
+  private FunctionState current;
+  private ClassState currentClass;
+  private int line = 1;
+
+  Compiler() {
+    this(new Diagnostics(System.err));
+  }
+
+  Compiler(Diagnostics diagnostics) {
+    this.diagnostics = diagnostics;
+  }
+
+  Obj.Function compile(List<Stmt> statements) {
+    current = new FunctionState(null, new Obj.Function(null), FunctionType.SCRIPT);
+    for (Stmt statement : statements) {
+      compile(statement);
+    }
+    emitReturn();
+    return endFunction();
+  }
+
+  private void compile(Stmt stmt) {
+    stmt.accept(this);
+  }
+
+  private void compile(Expr expr) {
+    expr.accept(this);
+  }
+
+  private Chunk currentChunk() {
+    return current.function.chunk;
+  }
+
+  private Obj.Function endFunction() {
+    Obj.Function function = current.function;
+    function.upvalueCount = current.upvalues.size();
+    function.chunk.trim();
+    current = current.enclosing;
+    return function;
+  }
+
+  @Override
+  public Void visitBlockStmt(Stmt.Block stmt) {
+    beginScope();
+    for (Stmt statement : stmt.statements) {
+      compile(statement);
+    }
+    endScope();
+    return null;
+  }
+
+  @Override
+  public Void visitClassStmt(Stmt.Class stmt) {
+    line = stmt.name.line;
+    int nameConstant = identifierConstant(stmt.name.lexeme());
+    declareVariable(stmt.name.lexeme());
+
+    emitShort(OP_CLASS, nameConstant);
+    defineVariable(nameConstant);
+
+    ClassState classState = new ClassState(currentClass);
+    currentClass = classState;
+
+    if (stmt.superclass != null) {
+      compile(stmt.superclass);
+
+      beginScope();
+      addLocal("super");
+
+      namedVariable(stmt.name.lexeme(), false);
+      line = stmt.superclass.name.line;
+      emitByte(OP_INHERIT);
+      classState.hasSuperclass = true;
+    }
+
+    namedVariable(stmt.name.lexeme(), false);
+    for (Stmt.Function method : stmt.methods) {
+      FunctionType type = FunctionType.METHOD;
+      if (method.name.lexeme().equals("init")) {
+        type = FunctionType.INITIALIZER;
+      }
+      function(method, type);
+      emitShort(OP_METHOD, identifierConstant(method.name.lexeme()));
+    }
+    emitByte(OP_POP);
+
+    if (classState.hasSuperclass) {
+      endScope();
+    }
+    currentClass = currentClass.enclosing;
+    return null;
+  }
+
+  @Override
+  public Void visitExpressionStmt(Stmt.Expression stmt) {
+    compile(stmt.expression);
+    emitByte(OP_POP);
+    return null;
+  }
+
+  @Override
+  public Void visitPrintStmt(Stmt.Print stmt) {
+    compile(stmt.expression);
+    emitByte(OP_PRINT);
+    return null;
+  }
+
+  @Override
+  public Void visitReturnStmt(Stmt.Return stmt) {
+    line = stmt.keyword.line;
+    if (stmt.value == null) {
+      emitReturn();
+    } else {
+      compile(stmt.value);
+      emitByte(OP_RETURN);
+    }
+    return null;
+  }
+
+  @Override
+  public Void visitFunctionStmt(Stmt.Function stmt) {
+    line = stmt.name.line;
+    int nameConstant = identifierConstant(stmt.name.lexeme());
+    declareVariable(stmt.name.lexeme());
+    function(stmt, FunctionType.FUNCTION);
+    defineVariable(nameConstant);
+    return null;
+  }
+
+  private void function(Stmt.Function stmt, FunctionType type) {
+    line = stmt.name.line;
+    current = new FunctionState(current, new Obj.Function(stmt.name.lexeme()), type);
+    beginScope();
+
+    for (Token param : stmt.params) {
+      current.function.arity++;
+      addLocal(param.lexeme());
+    }
+    for (Stmt statement : stmt.body) {
+      compile(statement);
+    }
+    emitReturn();
+
+    List<Upvalue> upvalues = current.upvalues;
+    Obj.Function function = endFunction();
+    emitShort(OP_CLOSURE, makeConstant(function));
+    for (Upvalue upvalue : upvalues) {
+      emitByte((byte) (upvalue.isLocal ? 1 : 0));
+      emitByte((byte) upvalue.index);
+    }
+  }
+
+  @Override
+  public Void visitIfStmt(Stmt.If stmt) {
+    compile(stmt.condition);
+
+    int thenJump = emitJump(OP_JUMP_IF_FALSE);
+    emitByte(OP_POP);
+    compile(stmt.thenBranch);
+
+    int elseJump = emitJump(OP_JUMP);
+    patchJump(thenJump);
+    emitByte(OP_POP);
+
+    if (stmt.elseBranch != null) {
+      compile(stmt.elseBranch);
+    }
+    patchJump(elseJump);
+    return null;
+  }
+
+  @Override
+  public Void visitVarStmt(Stmt.Var stmt) {
+    line = stmt.name.line;
+    int nameConstant = identifierConstant(stmt.name.lexeme());
+    if (stmt.initializer != null) {
+      compile(stmt.initializer);
+    } else {
+      emitByte(OP_NIL);
+    }
+    declareVariable(stmt.name.lexeme());
+    defineVariable(nameConstant);
+    return null;
+  }
+
+  @Override
+  public Void visitWhileStmt(Stmt.While stmt) {
+    int loopStart = currentChunk().count;
+    compile(stmt.condition);
+
+    int exitJump = emitJump(OP_JUMP_IF_FALSE);
+    emitByte(OP_POP);
+    compile(stmt.body);
+    emitLoop(loopStart);
+
+    patchJump(exitJump);
+    emitByte(OP_POP);
+    return null;
+  }
+
+  @Override
+  public Void visitBinaryExpr(Expr.Binary expr) {
+    compile(expr.left);
+    compile(expr.right);
+
+    line = expr.operator.line;
+    switch (expr.operator.type) {
+      case BANG_EQUAL -> emitByte(OP_NOT_EQUAL);
+      case EQUAL_EQUAL -> emitByte(OP_EQUAL);
+      case GREATER -> emitByte(OP_GREATER);
+      case GREATER_EQUAL -> emitByte(OP_GREATER_EQUAL);
+      case LESS -> emitByte(OP_LESS);
+      case LESS_EQUAL -> emitByte(OP_LESS_EQUAL);
+      case PLUS -> emitByte(OP_ADD);
+      case MINUS -> emitByte(OP_SUBTRACT);
+      case STAR -> emitByte(OP_MULTIPLY);
+      case SLASH -> emitByte(OP_DIVIDE);
+      default -> {
+      }
+    }
+    return null;
+  }
+
+  @Override
+  public Void visitGroupingExpr(Expr.Grouping expr) {
+    compile(expr.expression);
+    return null;
+  }
+
+  @Override
+  public Void visitCallExpr(Expr.Call expr) {
+    if (expr.callee instanceof Expr.Get get) {
+      compile(get.object);
+      int argCount = arguments(expr.arguments);
+      line = expr.paren.line;
+      emitShort(OP_INVOKE, identifierConstant(get.name.lexeme()));
+      emitByte((byte) argCount);
+      return null;
+    }
+
+    if (expr.callee instanceof Expr.Super superExpr) {
+      line = superExpr.keyword.line;
+      namedVariable("this", false);
+      int argCount = arguments(expr.arguments);
+      namedVariable("super", false);
+      line = expr.paren.line;
+      emitShort(OP_SUPER_INVOKE, identifierConstant(superExpr.method.lexeme()));
+      emitByte((byte) argCount);
+      return null;
+    }
+
+    compile(expr.callee);
+    int argCount = arguments(expr.arguments);
+    line = expr.paren.line;
+    emitBytes(OP_CALL, (byte) argCount);
+    return null;
+  }
+
+  private int arguments(List<Expr> arguments) {
+    for (Expr argument : arguments) {
+      compile(argument);
+    }
+    return arguments.size();
+  }
+
+  @Override
+  public Void visitGetExpr(Expr.Get expr) {
+    compile(expr.object);
+    line = expr.name.line;
+    emitShort(OP_GET_PROPERTY, identifierConstant(expr.name.lexeme()));
+    return null;
+  }
+
+  @Override
+  public Void visitGetIndexExpr(Expr.GetIndex expr) {
+    compile(expr.object);
+    compile(expr.index);
+    line = expr.bracket.line;
+    emitByte(OP_GET_INDEX);
+    return null;
+  }
+
+  @Override
+  public Void visitLiteralExpr(Expr.Literal expr) {
+    if (expr.value == null) {
+      emitByte(OP_NIL);
+    } else if (expr.value instanceof Boolean) {
+      emitByte((boolean) expr.value ? OP_TRUE : OP_FALSE);
+    } else {
+      emitShort(OP_CONSTANT, makeConstant(expr.value));
+    }
+    return null;
+  }
+
+  @Override
+  public Void visitLogicalExpr(Expr.Logical expr) {
+    compile(expr.left);
+
+    if (expr.operator.type == TokenType.AND) {
+      int endJump = emitJump(OP_JUMP_IF_FALSE);
+      emitByte(OP_POP);
+      compile(expr.right);
+      patchJump(endJump);
+    } else {
+      int elseJump = emitJump(OP_JUMP_IF_FALSE);
+      int endJump = emitJump(OP_JUMP);
+      patchJump(elseJump);
+      emitByte(OP_POP);
+      compile(expr.right);
+      patchJump(endJump);
+    }
+    return null;
+  }
+
+  @Override
+  public Void visitSetExpr(Expr.Set expr) {
+    compile(expr.object);
+    compile(expr.value);
+    line = expr.name.line;
+    emitShort(OP_SET_PROPERTY, identifierConstant(expr.name.lexeme()));
+    return null;
+  }
+
+  @Override
+  public Void visitSetIndexExpr(Expr.SetIndex expr) {
+    compile(expr.object);
+    compile(expr.index);
+    compile(expr.value);
+    line = expr.bracket.line;
+    emitByte(OP_SET_INDEX);
+    return null;
+  }
+
+  @Override
+  public Void visitSuperExpr(Expr.Super expr) {
+    line = expr.keyword.line;
+    namedVariable("this", false);
+    namedVariable("super", false);
+    line = expr.method.line;
+    emitShort(OP_GET_SUPER, identifierConstant(expr.method.lexeme()));
+    return null;
+  }
+
+  @Override
+  public Void visitThisExpr(Expr.This expr) {
+    line = expr.keyword.line;
+    namedVariable("this", false);
+    return null;
+  }
+
+  @Override
+  public Void visitUnaryExpr(Expr.Unary expr) {
+    compile(expr.right);
+
+    line = expr.operator.line;
+    switch (expr.operator.type) {
+      case BANG -> emitByte(OP_NOT);
+      case MINUS -> emitByte(OP_NEGATE);
+      default -> {
+      }
+    }
+    return null;
+  }
+
+  @Override
+  public Void visitVariableExpr(Expr.Variable expr) {
+    line = expr.name.line;
+    namedVariable(expr.name.lexeme(), false);
+    return null;
+  }
+
+  @Override
+  public Void visitAssignExpr(Expr.Assign expr) {
+    compile(expr.value);
+    line = expr.name.line;
+    namedVariable(expr.name.lexeme(), true);
+    return null;
+  }
+
+  private void namedVariable(String name, boolean assign) {
+    int arg = resolveLocal(current, name);
+    if (arg != -1) {
+      emitBytes(assign ? OP_SET_LOCAL : OP_GET_LOCAL, (byte) arg);
+      return;
+    }
+
+    arg = resolveUpvalue(current, name);
+    if (arg != -1) {
+      emitBytes(assign ? OP_SET_UPVALUE : OP_GET_UPVALUE, (byte) arg);
+      return;
+    }
+
+    emitShort(assign ? OP_SET_GLOBAL : OP_GET_GLOBAL, identifierConstant(name));
+  }
+
+  private int resolveLocal(FunctionState state, String name) {
+    for (int i = state.locals.size() - 1; i >= 0; i--) {
+      if (state.locals.get(i).name.equals(name)) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  private int resolveUpvalue(FunctionState state, String name) {
+    if (state.enclosing == null) {
+      return -1;
+    }
+
+    int local = resolveLocal(state.enclosing, name);
+    if (local != -1) {
+      state.enclosing.locals.get(local).isCaptured = true;
+      return addUpvalue(state, local, true);
+    }
+
+    int upvalue = resolveUpvalue(state.enclosing, name);
+    if (upvalue != -1) {
+      return addUpvalue(state, upvalue, false);
+    }
+    return -1;
+  }
+
+  private int addUpvalue(FunctionState state, int index, boolean isLocal) {
+    for (int i = 0; i < state.upvalues.size(); i++) {
+      Upvalue upvalue = state.upvalues.get(i);
+      if (upvalue.index == index && upvalue.isLocal == isLocal) {
+        return i;
+      }
+    }
+
+    if (state.upvalues.size() == UINT8_COUNT) {
+      diagnostics.error(line, "Too many closure variables in function.");
+      return 0;
+    }
+
+    state.upvalues.add(new Upvalue(index, isLocal));
+    return state.upvalues.size() - 1;
+  }
+
+  private void declareVariable(String name) {
+    if (current.scopeDepth == 0) {
+      return;
+    }
+    addLocal(name);
+  }
+
+  private void addLocal(String name) {
+    if (current.locals.size() == UINT8_COUNT) {
+      diagnostics.error(line, "Too many local variables in function.");
+      return;
+    }
+    current.locals.add(new Local(name, current.scopeDepth));
+  }
+
+  private void defineVariable(int global) {
+    if (current.scopeDepth > 0) {
+      return;
+    }
+    emitShort(OP_DEFINE_GLOBAL, global);
+  }
+
+  private void beginScope() {
+    current.scopeDepth++;
+  }
+
+  private void endScope() {
+    current.scopeDepth--;
+
+    List<Local> locals = current.locals;
+    while (!locals.isEmpty() && locals.get(locals.size() - 1).depth > current.scopeDepth) {
+      if (locals.get(locals.size() - 1).isCaptured) {
+        emitByte(OP_CLOSE_UPVALUE);
+      } else {
+        emitByte(OP_POP);
+      }
+      locals.remove(locals.size() - 1);
+    }
+  }
+
+  // 이름 상수는 Symbol 로 넣어 VM 이 동일성으로 찾게 한다
+  private int identifierConstant(String name) {
+    return makeConstant(Symbol.of(name));
+  }
+
+  private int makeConstant(Object value) {
+    int constant = currentChunk().addConstant(value);
+    if (constant > UINT16_MAX) {
+      diagnostics.error(line, "Too many constants in one chunk.");
+      return 0;
+    }
+    return constant;
+  }
+
+  private void emitByte(byte b) {
+    currentChunk().write(b, line);
+  }
+
+  private void emitBytes(byte b1, byte b2) {
+    emitByte(b1);
+    emitByte(b2);
+  }
+
+  private void emitShort(byte op, int operand) {
+    emitByte(op);
+    emitByte((byte) ((operand >> 8) & 0xff));
+    emitByte((byte) (operand & 0xff));
+  }
+
+  private void emitReturn() {
+    if (current.type == FunctionType.INITIALIZER) {
+      emitBytes(OP_GET_LOCAL, (byte) 0);
+    } else {
+      emitByte(OP_NIL);
+    }
+    emitByte(OP_RETURN);
+  }
+
+  private int emitJump(byte instruction) {
+    emitByte(instruction);
+    emitByte((byte) 0xff);
+    emitByte((byte) 0xff);
+    return currentChunk().count - 2;
+  }
+
+  private void patchJump(int offset) {
+    int jump = currentChunk().count - offset - 2;
+    if (jump > UINT16_MAX) {
+      diagnostics.error(line, "Too much code to jump over.");
+    }
+
+    currentChunk().code[offset] = (byte) ((jump >> 8) & 0xff);
+    currentChunk().code[offset + 1] = (byte) (jump & 0xff);
+  }
+
+  private void emitLoop(int loopStart) {
+    emitByte(OP_LOOP);
+
+    int offset = currentChunk().count - loopStart + 2;
+    if (offset > UINT16_MAX) {
+      diagnostics.error(line, "Loop body too large.");
+    }
+
+    emitByte((byte) ((offset >> 8) & 0xff));
+    emitByte((byte) (offset & 0xff));
+  }
+}
@@ -0,0 +1,6 @@
+package lox;
+
+enum Completion {
+  NORMAL,
+  RETURN
+}
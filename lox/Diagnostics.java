@@ -0,0 +1,56 @@
+package lox;
+
+import static lox.TokenType.EOF;
+
+import java.io.PrintStream;
+
+// 오류를 받아 적는 곳. 격리 단위마다 하나씩 두므로 동시에 도는 스크립트의 오류가 섞이지 않는다
+public class Diagnostics {
+
+  private final PrintStream err;
+  private boolean hadError = false;
+  private boolean hadRuntimeError = false;
+
+  public Diagnostics(PrintStream err) {
+    this.err = err;
+  }
+
+  public boolean hadError() {
+    return hadError;
+  }
+
+  public boolean hadRuntimeError() {
+    return hadRuntimeError;
+  }
+
+  void reset() {
+    hadError = false;
+    hadRuntimeError = false;
+  }
+
+  void error(int line, String message) {
+    report(line, "", message);
+  }
+
+  void error(Token token, String message) {
+    if (token.type == EOF) {
+      report(token.line, " at end ", message);
+    } else {
+      report(token.line, " at '" + token.lexeme() + "'", message);
+    }
+  }
+
+  private void report(int line, String where, String message) {
+    err.println("[line " + line + "] Error" + where + ": " + message);
+    hadError = true;
+  }
+
+  void runtimeError(RuntimeError error) {
+    runtimeError(error.getMessage(), error.token.line);
+  }
+
+  void runtimeError(String message, int line) {
+    err.println(message + "\n[line " + line + "]");
+    hadRuntimeError = true;
+  }
+}
@@ -1,56 +1,61 @@
 package lox;
 
-import java.util.HashMap;
-import java.util.Map;
-
 public class Environment {
 
 	final Environment enclosing;
-	private final Map<String, Object> values = new HashMap<>();
+	private final SymbolMap<Object> values;
+	private final Object[] slots;
 
-	public Environment(Environment enclosing) {
+	public Environment(Environment enclosing, int size) {
 		this.enclosing = enclosing;
+		this.values = null;
+		this.slots = new Object[size];
 	}
 
 	public Environment() {
 		enclosing = null;
+		values = new SymbolMap<>();
+		slots = null;
 	}
 
 	void define(String name, Object value) {
+		define(Symbol.of(name), value);
+	}
+
+	void define(Symbol name, Object value) {
 		values.put(name, value);
 	}
 
+	void define(int slot, Object value) {
+		slots[slot] = value;
+	}
+
 	Object get(Token name) {
-		if (values.containsKey(name.lexeme)) {
-			return values.get(name.lexeme);
+		Symbol symbol = name.symbol();
+		if (values.containsKey(symbol)) {
+			return values.get(symbol);
 		}
 
-		if (enclosing != null) {
-			return enclosing.get(name);
-		}
 		throw new RuntimeError(name,
-			"Undefined variable '" + name.lexeme + "'.");
+			"Undefined variable '" + name.lexeme() + "'.");
 	}
 
 	void assign(Token name, Object value) {
-		if (values.containsKey(name.lexeme)) {
-			values.put(name.lexeme, value);
+		Symbol symbol = name.symbol();
+		if (values.containsKey(symbol)) {
+			values.put(symbol, value);
 			return;
 		}
 
-		if (enclosing != null) {
-			enclosing.assign(name, value);
-			return;
-		}
 		throw new RuntimeError(name,
-			"Undefined variable '" + name.lexeme + "'.");
+			"Undefined variable '" + name.lexeme() + "'.");
 	}
 
-	public Object getAt(Integer distance, String name) {
-		return ancestor(distance).values.get(name);
+	public Object getAt(int distance, int slot) {
+		return ancestor(distance).slots[slot];
 	}
 
-	Environment ancestor(Integer distance) {
+	Environment ancestor(int distance) {
 		Environment environment = this;
 		for (int i = 0; i < distance; i++) {
 			assert environment != null;
@@ -59,7 +64,7 @@ public class Environment {
 		return environment;
 	}
 
-	public void assignAt(Integer distance, Token name, Object value) {
-		ancestor(distance).values.put(name.lexeme, value);
+	public void assignAt(int distance, int slot, Object value) {
+		ancestor(distance).slots[slot] = value;
 	}
 }
@@ -8,9 +8,11 @@ abstract class Expr {
    R visitGroupingExpr(Grouping expr);
    R visitCallExpr(Call expr);
    R visitGetExpr(Get expr);
+   R visitGetIndexExpr(GetIndex expr);
    R visitLiteralExpr(Literal expr);
    R visitLogicalExpr(Logical expr);
    R visitSetExpr(Set expr);
+   R visitSetIndexExpr(SetIndex expr);
    R visitSuperExpr(Super expr);
    R visitThisExpr(This expr);
    R visitUnaryExpr(Unary expr);
@@ -32,6 +34,7 @@ abstract class Expr {
    final Expr left;
    final Token operator;
    final Expr right;
+   BinaryOp op = BinaryOp.UNINITIALIZED;
  }
  static class Grouping extends Expr {
   Grouping(Expr expression) {
@@ -60,6 +63,7 @@ abstract class Expr {
    final Expr callee;
    final Token paren;
    final List<Expr> arguments;
+   int cacheSlot = -1;
  }
  static class Get extends Expr {
   Get(Expr object, Token name) {
@@ -74,6 +78,23 @@ abstract class Expr {
 
    final Expr object;
    final Token name;
+   int cacheSlot = -1;
+ }
+ static class GetIndex extends Expr {
+  GetIndex(Expr object, Token bracket, Expr index) {
+   this.object = object;
+   this.bracket = bracket;
+   this.index = index;
+   }
+
+   @Override
+   <R> R accept(Visitor<R> visitor) {
+   return visitor.visitGetIndexExpr(this);
+   }
+
+   final Expr object;
+   final Token bracket;
+   final Expr index;
  }
  static class Literal extends Expr {
   Literal(Object value) {
@@ -118,6 +139,25 @@ abstract class Expr {
    final Expr object;
    final Token name;
    final Expr value;
+   int cacheSlot = -1;
+ }
+ static class SetIndex extends Expr {
+  SetIndex(Expr object, Token bracket, Expr index, Expr value) {
+   this.object = object;
+   this.bracket = bracket;
+   this.index = index;
+   this.value = value;
+   }
+
+   @Override
+   <R> R accept(Visitor<R> visitor) {
+   return visitor.visitSetIndexExpr(this);
+   }
+
+   final Expr object;
+   final Token bracket;
+   final Expr index;
+   final Expr value;
  }
  static class Super extends Expr {
   Super(Token keyword, Token method) {
@@ -132,6 +172,8 @@ abstract class Expr {
 
    final Token keyword;
    final Token method;
+   int depth = -1;
+   int slot = -1;
  }
  static class This extends Expr {
   This(Token keyword) {
@@ -144,6 +186,8 @@ abstract class Expr {
    }
 
    final Token keyword;
+   int depth = -1;
+   int slot = -1;
  }
  static class Unary extends Expr {
   Unary(Token operator, Expr right) {
@@ -170,6 +214,8 @@ abstract class Expr {
    }
 
    final Token name;
+   int depth = -1;
+   int slot = -1;
  }
  static class Assign extends Expr {
   Assign(Token name, Expr value) {
@@ -184,6 +230,8 @@ abstract class Expr {
 
    final Token name;
    final Expr value;
+   int depth = -1;
+   int slot = -1;
  }
 
  abstract <R> R accept(Visitor<R> visitor);
@@ -0,0 +1,49 @@
+package lox;
+
+// 전역 변수 표. spawn 으로 작업이 생기면 여러 스레드가 함께 쓰므로 그 뒤로는 잠금을 잡고 읽고 쓴다.
+// 지역 환경은 매 호출마다 만들므로 잠금 여부는 여기에만 둔다
+final class Globals extends Environment {
+
+  // 첫 작업의 스레드를 시작하기 전에 켜므로 volatile 이 아니어도 작업 스레드는 모두 본다
+  private boolean shared = false;
+
+  void share() {
+    shared = true;
+  }
+
+  boolean shared() {
+    return shared;
+  }
+
+  @Override
+  void define(Symbol name, Object value) {
+    if (shared) {
+      synchronized (this) {
+        super.define(name, value);
+      }
+      return;
+    }
+    super.define(name, value);
+  }
+
+  @Override
+  Object get(Token name) {
+    if (shared) {
+      synchronized (this) {
+        return super.get(name);
+      }
+    }
+    return super.get(name);
+  }
+
+  @Override
+  void assign(Token name, Object value) {
+    if (shared) {
+      synchronized (this) {
+        super.assign(name, value);
+      }
+      return;
+    }
+    super.assign(name, value);
+  }
+}
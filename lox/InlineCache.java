@@ -0,0 +1,53 @@
+package lox;
+
+import java.util.Arrays;
+
+final class InlineCache {
+
+  private static final int POLYMORPHIC_LIMIT = 4;
+  private static final Entry[] EMPTY = new Entry[0];
+
+  static final class Entry {
+
+    final Shape shape;
+    final Shape next;
+    final int index;
+    final LoxFunction method;
+
+    Entry(Shape shape, Shape next, int index, LoxFunction method) {
+      this.shape = shape;
+      this.next = next;
+      this.index = index;
+      this.method = method;
+    }
+  }
+
+  // 엔트리 배열은 교체만 하고 수정하지 않는다
+  private Entry[] entries = EMPTY;
+  private boolean megamorphic = false;
+
+  Entry lookup(Shape shape) {
+    Entry[] entries = this.entries;
+    for (Entry entry : entries) {
+      if (entry != null && entry.shape == shape) {
+        return entry;
+      }
+    }
+    return null;
+  }
+
+  void add(Entry entry) {
+    if (megamorphic) {
+      return;
+    }
+    if (entries.length == POLYMORPHIC_LIMIT) {
+      megamorphic = true;
+      entries = EMPTY;
+      return;
+    }
+
+    Entry[] grown = Arrays.copyOf(entries, entries.length + 1);
+    grown[entries.length] = entry;
+    entries = grown;
+  }
+}
@@ -1,53 +1,120 @@
 package lox;
 
-import java.util.ArrayList;
-import java.util.HashMap;
+import java.io.PrintStream;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Map;
 import lox.Expr.Super;
 import lox.Stmt.Block;
 import lox.Stmt.If;
 import lox.Stmt.Var;
 import lox.Stmt.While;
 
-public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
-
-  final Environment globals = new Environment();
-  private Environment environment = globals;
-  private final Map<Expr, Integer> locals = new HashMap<>();
+public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Completion> {
+
+  final Globals globals;
+  private Environment environment;
+  // 리졸버가 매긴 번호로 찾는 인라인 캐시. 실행마다 따로 두므로 구문 트리는 공유해도 된다
+  private InlineCache[] caches = new InlineCache[16];
+  private Object returnValue;
+  // JIT 가 함수의 뜨거운 정도를 재기 위해 세는 루프 반복 횟수
+  int backEdges = 0;
+  private int polls = 0;
+  boolean jit = true;
+  // print 출력과 오류 보고는 인터프리터마다 따로 둔다
+  final PrintStream out;
+  final Diagnostics diagnostics;
+  // 이 실행에서 spawn 한 작업들. 작업의 인터프리터도 같은 묶음을 쓴다
+  final LoxTask.Group tasks;
 
   Interpreter() {
-    globals.define("clock", new LoxCallable() {
-      @Override
-      public Object call(Interpreter interpreter, List<Object> arguments) {
-        return (double) System.currentTimeMillis() / 1000.0;
-      }
-
-      @Override
-      public int arity() {
-        return 0;
-      }
-
-      @Override
-      public String toString() {
-        return "<native fn>";
-      }
+    this(System.out, new Diagnostics(System.err));
+  }
+
+  Interpreter(PrintStream out, Diagnostics diagnostics) {
+    this.globals = new Globals();
+    this.environment = globals;
+    this.out = out;
+    this.diagnostics = diagnostics;
+    this.tasks = new LoxTask.Group();
+    defineNatives();
+  }
+
+  // 작업 하나가 쓰는 인터프리터. 전역, 출력, 오류 보고는 부모와 같이 쓰고 환경과 인라인 캐시는 따로 둔다
+  private Interpreter(Interpreter parent) {
+    this.globals = parent.globals;
+    this.environment = globals;
+    this.out = parent.out;
+    this.diagnostics = parent.diagnostics;
+    this.tasks = parent.tasks;
+    this.jit = parent.jit;
+  }
+
+  Interpreter fork() {
+    return new Interpreter(this);
+  }
+
+  private void defineNatives() {
+    defineNative("clock", 0,
+        (interpreter, arguments) -> (double) System.currentTimeMillis() / 1000.0);
+    defineNative("spawn", 1,
+        (interpreter, arguments) -> LoxTask.spawn(interpreter, arguments[0]));
+    defineNative("join", 1, (interpreter, arguments) -> LoxTask.of(arguments[0]).join());
+    defineNative("channel", 1, (interpreter, arguments) -> LoxChannel.create(arguments[0]));
+    defineNative("send", 2, (interpreter, arguments) -> {
+      LoxChannel.of(arguments[0]).send(arguments[1]);
+      return null;
+    });
+    defineNative("receive", 1,
+        (interpreter, arguments) -> LoxChannel.of(arguments[0]).receive());
+    defineNative("close", 1, (interpreter, arguments) -> {
+      LoxChannel.of(arguments[0]).close();
+      return null;
+    });
+    defineNative("list", 0, (interpreter, arguments) -> new LoxList());
+    defineNative("push", 2, (interpreter, arguments) -> {
+      LoxList.of(arguments[0]).add(arguments[1]);
+      return null;
     });
+    defineNative("pop", 1, (interpreter, arguments) -> LoxList.of(arguments[0]).removeLast());
+    defineNative("len", 1, (interpreter, arguments) -> (double) LoxList.of(arguments[0]).size());
+  }
+
+  private void defineNative(String name, int arity, LoxNative.Body body) {
+    globals.define(name, new LoxNative(arity, body));
   }
 
   @Override
-  public Void visitFunctionStmt(Stmt.Function stmt) {
+  public Completion visitFunctionStmt(Stmt.Function stmt) {
     LoxFunction function = new LoxFunction(stmt, environment, false);
-    environment.define(stmt.name.lexeme, function);
-    return null;
+    define(stmt.slot, stmt.name, function);
+    return Completion.NORMAL;
+  }
+
+  InlineCache cache(int slot) {
+    if (slot < caches.length) {
+      InlineCache cache = caches[slot];
+      if (cache != null) {
+        return cache;
+      }
+    } else {
+      caches = Arrays.copyOf(caches, Math.max(slot + 1, caches.length * 2));
+    }
+    return caches[slot] = new InlineCache();
   }
 
   void interpret(Expr expression) {
     try {
       Object value = evaluate(expression);
-      System.out.println(stringify(value));
+      out.println(stringify(value));
+      tasks.await();
     } catch (RuntimeError error) {
-      Lox.runtimeError(error);
+      tasks.cancel();
+      diagnostics.runtimeError(error);
+    } catch (ScriptCancelled e) {
+      tasks.cancel();
+      throw e;
+    } finally {
+      environment = globals;
     }
   }
 
@@ -60,48 +127,70 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
     }
 
     Object value = evaluate(expr.value);
-    ((LoxInstance) object).set(expr.name, value);
+    ((LoxInstance) object).set(expr.name, value, cache(expr.cacheSlot));
     return value;
   }
 
   @Override
   public Object visitSuperExpr(Super expr) {
-    int distance = locals.get(expr);
-    LoxClass superclass = (LoxClass) environment.getAt(distance, "super");
+    int distance = expr.depth;
+    LoxClass superclass = (LoxClass) environment.getAt(distance, expr.slot);
 
-    LoxInstance object = (LoxInstance) environment.getAt(distance - 1, "this");
-    LoxFunction method = superclass.findMethod(expr.method.lexeme);
+    LoxInstance object = (LoxInstance) environment.getAt(distance - 1, 0);
+    LoxFunction method = superclass.findMethod(expr.method.symbol());
     if (method == null) {
-      throw new RuntimeError(expr.method, "Undefined property '" + expr.method.lexeme + "'");
+      throw new RuntimeError(expr.method, "Undefined property '" + expr.method.lexeme() + "'");
     }
 
     return method.bind(object);
   }
 
+  // 스크립트가 정상적으로 끝나면 남은 작업을 기다리고, 실패하거나 취소되면 작업도 멈춘다
   void interpret(List<Stmt> statements) {
     try {
       for (Stmt statement : statements) {
         execute(statement);
       }
+      tasks.await();
     } catch (RuntimeError error) {
-      Lox.runtimeError(error);
+      tasks.cancel();
+      diagnostics.runtimeError(error);
+    } catch (ScriptCancelled e) {
+      tasks.cancel();
+      throw e;
+    } finally {
+      environment = globals;
+    }
+  }
+
+  // 시간 제한을 넘긴 요청을 멈출 수 있도록 루프와 호출에서 가끔 인터럽트를 확인한다
+  void poll() {
+    if ((++polls & ScriptCancelled.POLL_MASK) == 0) {
+      ScriptCancelled.check();
     }
   }
 
-  private void execute(Stmt stmt) {
-    stmt.accept(this);
+  private Completion execute(Stmt stmt) {
+    return stmt.accept(this);
   }
 
   @Override
-  public Void visitReturnStmt(Stmt.Return stmt) {
+  public Completion visitReturnStmt(Stmt.Return stmt) {
     Object value = null;
     if (stmt.value != null) {
       value = evaluate(stmt.value);
     }
-    throw new Return(value);
+    returnValue = value;
+    return Completion.RETURN;
   }
 
-  private String stringify(Object object) {
+  Object takeReturnValue() {
+    Object value = returnValue;
+    returnValue = null;
+    return value;
+  }
+
+  static String stringify(Object object) {
     if (object == null) {
       return "nil";
     }
@@ -121,66 +210,10 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
     Object left = evaluate(expr.left);
     Object right = evaluate(expr.right);
 
-    switch (expr.operator.type) {
-      case GREATER -> {
-        checkNumberOperands(expr.operator, left, right);
-        return (double) left > (double) right;
-      }
-      case GREATER_EQUAL -> {
-        checkNumberOperands(expr.operator, left, right);
-        return (double) left >= (double) right;
-      }
-      case LESS -> {
-        checkNumberOperands(expr.operator, left, right);
-        return (double) left < (double) right;
-      }
-      case LESS_EQUAL -> {
-        checkNumberOperands(expr.operator, left, right);
-        return (double) left <= (double) right;
-      }
-      case BANG_EQUAL -> {
-        return !isEqual(left, right);
-      }
-      case EQUAL_EQUAL -> {
-        return isEqual(left, right);
-      }
-      case MINUS -> {
-        checkNumberOperands(expr.operator, left, right);
-        return (double) left - (double) right;
-      }
-      case SLASH -> {
-        checkNumberOperands(expr.operator, left, right);
-        return (double) left / (double) right;
-      }
-      case STAR -> {
-        checkNumberOperands(expr.operator, left, right);
-        return (double) left * (double) right;
-      }
-      case PLUS -> {
-        if (left instanceof Double && right instanceof Double) {
-          return (double) left + (double) right;
-        }
-
-        if (left instanceof String && right instanceof String) {
-          return left + (String) right;
-        }
-
-        throw new RuntimeError(expr.operator, "Operands must be two numbers or two strings");
-      }
-      default -> {
-        return null;
-      }
-    }
-  }
-
-  private void checkNumberOperands(Token operator, Object left, Object right) {
-    if (left instanceof Double && right instanceof Double) {
-      return;
-    }
-    throw new RuntimeError(operator, "Operands must be numbers");
+    return expr.op.execute(expr, left, right);
   }
 
-  private boolean isEqual(Object left, Object right) {
+  static boolean isEqual(Object left, Object right) {
     if (left == null && right == null) {
       return true;
     }
@@ -198,22 +231,138 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
 
   @Override
   public Object visitCallExpr(Expr.Call expr) {
-    Object callee = evaluate(expr.callee);
+    if (expr.callee instanceof Expr.Get get) {
+      Object object = evaluate(get.object);
+      if (!(object instanceof LoxInstance instance)) {
+        throw new RuntimeError(get.name, "Only instances have properties.");
+      }
+
+      InlineCache cache = cache(expr.cacheSlot);
+      LoxFunction method = instance.method(get.name, cache);
+      if (method != null) {
+        return invoke(expr, method, instance);
+      }
+      return call(expr, instance.get(get.name, cache));
+    }
+
+    if (expr.callee instanceof Expr.Super superExpr) {
+      LoxClass superclass = (LoxClass) environment.getAt(superExpr.depth, superExpr.slot);
+      LoxInstance object = (LoxInstance) environment.getAt(superExpr.depth - 1, 0);
+      LoxFunction method = superclass.findMethod(superExpr.method.symbol());
+      if (method == null) {
+        throw new RuntimeError(superExpr.method,
+            "Undefined property '" + superExpr.method.lexeme() + "'");
+      }
 
-    List<Object> arguments = new ArrayList<>();
-    for (Expr argument : expr.arguments) {
-      arguments.add(evaluate(argument));
+      return invoke(expr, method, object);
+    }
+
+    return call(expr, evaluate(expr.callee));
+  }
+
+  // 인자가 4개 이하인 호출은 인자를 평가한 값 그대로 넘겨 리스트도 배열도 만들지 않는다.
+  // 인자는 호출 대상 검사보다 먼저 모두 평가한다
+  private Object call(Expr.Call expr, Object callee) {
+    List<Expr> arguments = expr.arguments;
+    try {
+      switch (arguments.size()) {
+        case 0 -> {
+          return callable(expr, callee, 0).call0(this);
+        }
+        case 1 -> {
+          Object a = evaluate(arguments.get(0));
+          return callable(expr, callee, 1).call1(this, a);
+        }
+        case 2 -> {
+          Object a = evaluate(arguments.get(0));
+          Object b = evaluate(arguments.get(1));
+          return callable(expr, callee, 2).call2(this, a, b);
+        }
+        case 3 -> {
+          Object a = evaluate(arguments.get(0));
+          Object b = evaluate(arguments.get(1));
+          Object c = evaluate(arguments.get(2));
+          return callable(expr, callee, 3).call3(this, a, b, c);
+        }
+        case 4 -> {
+          Object a = evaluate(arguments.get(0));
+          Object b = evaluate(arguments.get(1));
+          Object c = evaluate(arguments.get(2));
+          Object d = evaluate(arguments.get(3));
+          return callable(expr, callee, 4).call4(this, a, b, c, d);
+        }
+        default -> {
+          Object[] values = evaluateArguments(arguments);
+          return callable(expr, callee, values.length).callArray(this, values);
+        }
+      }
+    } catch (NativeError error) {
+      throw error.at(expr.paren);
     }
-    if (!(callee instanceof LoxCallable)) {
+  }
+
+  private static LoxCallable callable(Expr.Call expr, Object callee, int count) {
+    if (!(callee instanceof LoxCallable function)) {
       throw new RuntimeError(expr.paren, "Can only call functions and classes");
     }
-    LoxCallable function = (LoxCallable) callee;
+    checkArity(expr.paren, function, count);
+    return function;
+  }
+
+  private Object invoke(Expr.Call expr, LoxFunction method, LoxInstance receiver) {
+    List<Expr> arguments = expr.arguments;
+    switch (arguments.size()) {
+      case 0 -> {
+        checkArity(expr.paren, method, 0);
+        return method.invoke0(this, receiver);
+      }
+      case 1 -> {
+        Object a = evaluate(arguments.get(0));
+        checkArity(expr.paren, method, 1);
+        return method.invoke1(this, receiver, a);
+      }
+      case 2 -> {
+        Object a = evaluate(arguments.get(0));
+        Object b = evaluate(arguments.get(1));
+        checkArity(expr.paren, method, 2);
+        return method.invoke2(this, receiver, a, b);
+      }
+      case 3 -> {
+        Object a = evaluate(arguments.get(0));
+        Object b = evaluate(arguments.get(1));
+        Object c = evaluate(arguments.get(2));
+        checkArity(expr.paren, method, 3);
+        return method.invoke3(this, receiver, a, b, c);
+      }
+      case 4 -> {
+        Object a = evaluate(arguments.get(0));
+        Object b = evaluate(arguments.get(1));
+        Object c = evaluate(arguments.get(2));
+        Object d = evaluate(arguments.get(3));
+        checkArity(expr.paren, method, 4);
+        return method.invoke4(this, receiver, a, b, c, d);
+      }
+      default -> {
+        Object[] values = evaluateArguments(arguments);
+        checkArity(expr.paren, method, values.length);
+        return method.invokeArray(this, receiver, values);
+      }
+    }
+  }
+
+  private Object[] evaluateArguments(List<Expr> expressions) {
+    Object[] arguments = new Object[expressions.size()];
+    for (int i = 0; i < arguments.length; i++) {
+      arguments[i] = evaluate(expressions.get(i));
+    }
+    return arguments;
+  }
 
-    if (arguments.size() != function.arity()) {
-      throw new RuntimeError(expr.paren,
-          "Excepted " + function.arity() + " arguments but got " + arguments.size() + ".");
+  static void checkArity(Token paren, LoxCallable function, int count) {
+    if (count != function.arity()) {
+      throw new RuntimeError(paren,
+          "Excepted " + function.arity() + " arguments but got " + count + ".");
     }
-    return function.call(this, arguments);
   }
 
   @Override
@@ -228,10 +377,10 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
     if (expr.operator.type == TokenType.OR) {
       if (isTruthy(left)) {
         return left;
-      } else {
-        if (!isTruthy(left)) {
-          return left;
-        }
+      }
+    } else {
+      if (!isTruthy(left)) {
+        return left;
       }
     }
     return evaluate(expr.right);
@@ -256,13 +405,12 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
   @Override
   public Object visitVariableExpr(Expr.Variable expr) {
     // return environment.get(expr.name);
-    return lookUpVariable(expr.name, expr);
+    return lookUpVariable(expr.name, expr.depth, expr.slot);
   }
 
-  private Object lookUpVariable(Token name, Expr expr) {
-    Integer distance = locals.get(expr);
-    if (distance != null) {
-      return environment.getAt(distance, name.lexeme);
+  private Object lookUpVariable(Token name, int depth, int slot) {
+    if (depth != -1) {
+      return environment.getAt(depth, slot);
     }
     return globals.get(name);
   }
@@ -271,11 +419,10 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
   public Object visitAssignExpr(Expr.Assign expr) {
     Object value = evaluate(expr.value);
 
-    Integer distance = locals.get(expr);
-    if (distance != null) {
-      environment.assignAt(distance, expr.name, value);
+    if (expr.depth != -1) {
+      environment.assignAt(expr.depth, expr.slot, value);
     } else {
-      environment.assign(expr.name, value);
+      globals.assign(expr.name, value);
     }
     return value;
   }
@@ -284,18 +431,33 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
   public Object visitGetExpr(Expr.Get expr) {
     Object object = evaluate(expr.object);
     if (object instanceof LoxInstance) {
-      return ((LoxInstance) object).get(expr.name);
+      return ((LoxInstance) object).get(expr.name, cache(expr.cacheSlot));
     }
     throw new RuntimeError(expr.name, "Only instances have properties.");
   }
 
+  @Override
+  public Object visitGetIndexExpr(Expr.GetIndex expr) {
+    Object object = evaluate(expr.object);
+    Object index = evaluate(expr.index);
+    return LoxList.getIndex(object, index, expr.bracket);
+  }
+
+  @Override
+  public Object visitSetIndexExpr(Expr.SetIndex expr) {
+    Object object = evaluate(expr.object);
+    Object index = evaluate(expr.index);
+    Object value = evaluate(expr.value);
+    return LoxList.setIndex(object, index, value, expr.bracket);
+  }
+
   @Override
   public Object visitThisExpr(Expr.This expr) {
-    return lookUpVariable(expr.keyword, expr);
+    return lookUpVariable(expr.keyword, expr.depth, expr.slot);
   }
 
   @Override
-  public Void visitClassStmt(Stmt.Class stmt) {
+  public Completion visitClassStmt(Stmt.Class stmt) {
     Object superclass = null;
     if (stmt.superclass != null) {
       superclass = evaluate(stmt.superclass);
@@ -303,27 +465,28 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
         throw new RuntimeError(stmt.superclass.name, "Superclass must be a class.");
       }
     }
-    environment.define(stmt.name.lexeme, null);
+    define(stmt.slot, stmt.name, null);
 
     if (stmt.superclass != null) {
-      environment = new Environment(environment);
-      environment.define("super", superclass);
+      environment = new Environment(environment, 1);
+      environment.define(0, superclass);
     }
 
-    Map<String, LoxFunction> methods = new HashMap<>();
+    SymbolMap<LoxFunction> methods = new SymbolMap<>();
     for (Stmt.Function method : stmt.methods) {
       LoxFunction function = new LoxFunction(method, environment,
-          method.name.lexeme.equals("init"));
-      methods.put(method.name.lexeme, function);
+          method.name.symbol() == Symbol.INIT, true, null);
+      methods.put(method.name.symbol(), function);
     }
 
-    LoxClass klass = new LoxClass(stmt.name.lexeme, (LoxClass) superclass, methods);
+    LoxClass klass = new LoxClass(stmt.name.lexeme(), (LoxClass) superclass, methods,
+        globals);
 
     if (superclass != null) {
       environment = environment.enclosing;
     }
-    environment.assign(stmt.name, klass);
-    return null;
+    define(stmt.slot, stmt.name, klass);
+    return Completion.NORMAL;
   }
 
   private void checkNumberOperand(Token operator, Object operand) {
@@ -337,7 +500,7 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
     return expr.accept(this);
   }
 
-  private boolean isTruthy(Object object) {
+  static boolean isTruthy(Object object) {
     if (object == null) {
       return false;
     }
@@ -348,78 +511,81 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
   }
 
   @Override
-  public Void visitBlockStmt(Block stmt) {
-    executeBlock(stmt.statements, new Environment(environment));
-    return null;
+  public Completion visitBlockStmt(Block stmt) {
+    // 평평한 블록의 변수는 리졸버가 현재 프레임의 슬롯에 배정해 두었다
+    if (stmt.flat) {
+      return executeBlock(stmt.statements, environment);
+    }
+    return executeBlock(stmt.statements, new Environment(environment, stmt.localCount));
   }
 
-  void executeBlock(List<Stmt> statements, Environment environment) {
+  // RuntimeError 가 나면 interpret 에서 environment 를 되돌리므로 finally 가 필요 없다
+  Completion executeBlock(List<Stmt> statements, Environment environment) {
     Environment previous = this.environment;
-
-    try {
-      this.environment = environment;
-      for (Stmt statement : statements) {
-        execute(statement);
+    this.environment = environment;
+    for (Stmt statement : statements) {
+      Completion completion = execute(statement);
+      if (completion != Completion.NORMAL) {
+        this.environment = previous;
+        return completion;
       }
-    } finally {
-      this.environment = previous;
     }
-
+    this.environment = previous;
+    return Completion.NORMAL;
   }
 
   @Override
-  public Void visitExpressionStmt(Stmt.Expression stmt) {
+  public Completion visitExpressionStmt(Stmt.Expression stmt) {
     evaluate(stmt.expression);
-    return null;
+    return Completion.NORMAL;
   }
 
   @Override
-  public Void visitPrintStmt(Stmt.Print stmt) {
+  public Completion visitPrintStmt(Stmt.Print stmt) {
     Object value = evaluate(stmt.expression);
-    System.out.println(stringify(value));
-    return null;
+    out.println(stringify(value));
+    return Completion.NORMAL;
   }
 
   @Override
-  public Void visitIfStmt(If stmt) {
+  public Completion visitIfStmt(If stmt) {
     if (isTruthy(evaluate(stmt.condition))) {
-      execute(stmt.thenBranch);
+      return execute(stmt.thenBranch);
     } else if (stmt.elseBranch != null) {
-      execute(stmt.elseBranch);
+      return execute(stmt.elseBranch);
     }
-    return null;
+    return Completion.NORMAL;
   }
 
   @Override
-  public Void visitVarStmt(Var stmt) {
+  public Completion visitVarStmt(Var stmt) {
     Object value = null;
     if (stmt.initializer != null) {
       value = evaluate(stmt.initializer);
     }
 
-    environment.define(stmt.name.lexeme, value);
-    return null;
+    define(stmt.slot, stmt.name, value);
+    return Completion.NORMAL;
   }
 
-  @Override
-  public Void visitWhileStmt(While stmt) {
-    while (isTruthy(evaluate(stmt.condition))) {
-      execute(stmt.body);
+  private void define(int slot, Token name, Object value) {
+    if (slot != -1) {
+      environment.define(slot, value);
+    } else {
+      globals.define(name.symbol(), value);
     }
-    return null;
   }
 
-  public void resolve(Expr expr, int depth) {
-    locals.put(expr, depth);
-  }
-}
-
-class Return extends RuntimeException {
-
-  final Object value;
-
-  public Return(Object value) {
-    super(null, null, false, false);
-    this.value = value;
+  @Override
+  public Completion visitWhileStmt(While stmt) {
+    while (isTruthy(evaluate(stmt.condition))) {
+      backEdges++;
+      poll();
+      Completion completion = execute(stmt.body);
+      if (completion == Completion.RETURN) {
+        return completion;
+      }
+    }
+    return Completion.NORMAL;
   }
 }
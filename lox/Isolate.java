@@ -0,0 +1,190 @@
+package lox;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+
+// 인터프리터, 전역, 출력, 오류 보고를 혼자 가지는 실행 단위. 정적 상태를 쓰지 않으므로 서로 다른
+// isolate 는 여러 스레드에서 동시에 돌려도 되지만, isolate 하나는 한 번에 한 스레드만 쓴다
+public final class Isolate {
+
+  public enum Status {
+    OK(0),
+    COMPILE_ERROR(65),
+    RUNTIME_ERROR(70),
+    // 실행 스레드가 인터럽트되어 도중에 멈췄다
+    CANCELLED(75);
+
+    public final int exitCode;
+
+    Status(int exitCode) {
+      this.exitCode = exitCode;
+    }
+  }
+
+  private final LoxEngine engine;
+  private final PrintStream out;
+  private final Diagnostics diagnostics;
+  private final Interpreter interpreter;
+  // VM 은 스택이 커서 처음 쓸 때 만든다
+  private VM vm;
+  // 준비된 스크립트 전용 VM. 실행마다 전역만 비우고 다시 쓴다
+  private VM scriptVm;
+  // 이 isolate 의 인터프리터에서 이미 쓴 인라인 캐시 번호의 개수
+  private int cacheSites = 0;
+  // 아직 아무 코드도 실행하지 않아 전역이 비어 있다
+  private boolean fresh = true;
+  private boolean cancelled = false;
+
+  Isolate(LoxEngine engine, PrintStream out, PrintStream err) {
+    this.engine = engine;
+    this.out = out;
+    this.diagnostics = new Diagnostics(err);
+    this.interpreter = new Interpreter(out, diagnostics);
+    interpreter.jit = engine.jit;
+  }
+
+  public Diagnostics diagnostics() {
+    return diagnostics;
+  }
+
+  public Status runFile(Path path) throws IOException {
+    reset();
+    ByteBuffer source = map(path);
+    // 스냅샷은 캐시 번호가 0 부터이고 함수를 인라인했으므로 이 isolate 에서 처음 돌리는 프로그램에만
+    // 쓴다. 앞서 실행한 코드가 남긴 전역이 있으면 인라인하지 않는다
+    boolean useCache = engine.useCache && fresh;
+    Charset charset = Charset.defaultCharset();
+    PreparedScript script = useCache ? AstSnapshot.load(source, charset) : null;
+    if (script == null) {
+      script = prepare(new Scanner(source, charset, diagnostics), fresh);
+      if (script != null && useCache) {
+        AstSnapshot.store(source, charset, script);
+      }
+    }
+    if (script != null) {
+      execute(script);
+    }
+    return status();
+  }
+
+  // 앞서 실행한 코드의 전역은 남아 있고 뒤에 돌릴 코드가 함수를 다시 정의할 수 있으므로 인라인하지
+  // 않는다. 한 번만 돌릴 완결된 프로그램은 PreparedScript 로 실행하면 인라인한다
+  public Status run(String source) {
+    return run(source, false);
+  }
+
+  // 뒤에 올 입력이 전역을 바꿀 수 없을 때만 wholeProgram 을 참으로 준다
+  Status run(String source, boolean wholeProgram) {
+    reset();
+    PreparedScript script = prepare(new Scanner(source, diagnostics), wholeProgram);
+    if (script != null) {
+      execute(script);
+    }
+    return status();
+  }
+
+  public Status run(PreparedScript script) {
+    return run(script, Map.of());
+  }
+
+  // 준비된 스크립트는 매번 새 전역에서 실행하며 이 isolate 의 전역은 건드리지 않는다.
+  // globals 는 실행 전에 전역 변수로 정의된다. 값은 Lox 값(Double, String, Boolean, null)이어야 한다
+  public Status run(PreparedScript script, Map<String, Object> globals) {
+    reset();
+    try {
+      if (engine.useVm) {
+        Obj.Function function = compile(script);
+        if (function != null) {
+          if (scriptVm == null) {
+            scriptVm = new VM(out, diagnostics);
+          } else {
+            scriptVm.resetGlobals();
+          }
+          globals.forEach(scriptVm::defineGlobal);
+          scriptVm.interpret(function);
+        }
+      } else {
+        Interpreter interpreter = new Interpreter(out, diagnostics);
+        interpreter.jit = engine.jit;
+        globals.forEach(interpreter.globals::define);
+        interpreter.interpret(script.statements);
+      }
+    } catch (ScriptCancelled e) {
+      cancelled = true;
+    }
+    return status();
+  }
+
+  // 번역기처럼 실행하지 않고 분석한 구문만 쓸 때 부른다. 오류가 있으면 null 이다
+  PreparedScript analyze(ByteBuffer source) {
+    reset();
+    return engine.prepare(new Scanner(source, Charset.defaultCharset(), diagnostics), diagnostics,
+        true, 0);
+  }
+
+  private PreparedScript prepare(Scanner scanner, boolean wholeProgram) {
+    return engine.prepare(scanner, diagnostics, wholeProgram, cacheSites);
+  }
+
+  private void execute(PreparedScript script) {
+    cacheSites = Math.max(cacheSites, script.cacheSites);
+    fresh = false;
+    try {
+      if (engine.useVm) {
+        Obj.Function function = compile(script);
+        if (function == null) {
+          return;
+        }
+        if (vm == null) {
+          vm = new VM(out, diagnostics);
+        }
+        vm.interpret(function);
+        return;
+      }
+
+      interpreter.interpret(script.statements);
+    } catch (ScriptCancelled e) {
+      cancelled = true;
+    }
+  }
+
+  // 스냅샷에서 읽었거나 트리 엔진으로 준비한 스크립트는 바이트코드가 없어 여기서 컴파일한다
+  private Obj.Function compile(PreparedScript script) {
+    if (script.function != null) {
+      return script.function;
+    }
+    Obj.Function function = new Compiler(diagnostics).compile(script.statements);
+    return diagnostics.hadError() ? null : function;
+  }
+
+  private void reset() {
+    diagnostics.reset();
+    cancelled = false;
+  }
+
+  private Status status() {
+    if (cancelled) {
+      return Status.CANCELLED;
+    }
+    if (diagnostics.hadError()) {
+      return Status.COMPILE_ERROR;
+    }
+    if (diagnostics.hadRuntimeError()) {
+      return Status.RUNTIME_ERROR;
+    }
+    return Status.OK;
+  }
+
+  // 스캐너가 매핑된 버퍼를 바로 읽으므로 소스를 힙으로 복사하지 않는다
+  static ByteBuffer map(Path path) throws IOException {
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+    }
+  }
+}
@@ -0,0 +1,638 @@
+package lox;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+// 리졸브된 프로그램을 main 을 가진 자바 소스로 옮긴다. 함수 본문은 JitCode 하위 클래스가 된다
+class JavaTranslator implements Expr.Visitor<String>, Stmt.Visitor<Boolean> {
+
+  // 함수 하나(또는 최상위 코드)를 번역하는 동안의 상태
+  private static class Context {
+
+    // 중첩 함수나 클래스를 선언하는 본문은 캡처에 대비해 스코프마다 Environment 를 만든다
+    final boolean materialized;
+    final boolean isInitializer;
+    final List<Integer> scopes = new ArrayList<>();
+    final StringBuilder temps = new StringBuilder();
+    final StringBuilder body = new StringBuilder();
+    int indent = 2;
+
+    Context(boolean materialized, boolean isInitializer) {
+      this.materialized = materialized;
+      this.isInitializer = isInitializer;
+    }
+  }
+
+  private final String className;
+  private final StringBuilder fields = new StringBuilder();
+  private final StringBuilder classes = new StringBuilder();
+  private final Map<Object, String> names = new IdentityHashMap<>();
+  private int nameCount = 0;
+  private Context context;
+
+  JavaTranslator(String className) {
+    this.className = className;
+  }
+
+  static String classNameFor(String path) {
+    String file = path.substring(path.lastIndexOf('/') + 1);
+    if (file.endsWith(".lox")) {
+      file = file.substring(0, file.length() - 4);
+    }
+    StringBuilder name = new StringBuilder();
+    boolean upper = true;
+    for (char c : file.toCharArray()) {
+      if (!Character.isLetterOrDigit(c)) {
+        upper = true;
+        continue;
+      }
+      name.append(upper ? Character.toUpperCase(c) : c);
+      upper = false;
+    }
+    if (name.length() == 0 || !Character.isLetter(name.charAt(0))) {
+      name.insert(0, "Lox");
+    }
+    return name + "Script";
+  }
+
+  String translate(List<Stmt> statements) {
+    context = new Context(declaresFunctions(statements), false);
+    statements(statements);
+    Context script = context;
+
+    StringBuilder source = new StringBuilder();
+    source.append("package lox;\n\n");
+    source.append("import java.util.List;\n\n");
+    source.append("public final class ").append(className).append(" {\n\n");
+    source.append(fields);
+    if (fields.length() > 0) {
+      source.append('\n');
+    }
+    source.append("  public static void main(String[] args) {\n");
+    source.append("    Interpreter interpreter = new Interpreter();\n");
+    source.append("    try {\n");
+    source.append("      run(interpreter);\n");
+    source.append("      interpreter.tasks.await();\n");
+    source.append("    } catch (RuntimeError error) {\n");
+    source.append("      interpreter.diagnostics.runtimeError(error);\n");
+    source.append("      System.exit(70);\n");
+    source.append("    }\n");
+    source.append("    if (interpreter.diagnostics.hadRuntimeError()) {\n");
+    source.append("      System.exit(70);\n");
+    source.append("    }\n");
+    source.append("  }\n\n");
+    source.append("  static void run(Interpreter interpreter) {\n");
+    source.append(script.temps);
+    source.append(script.body);
+    source.append("  }\n\n");
+    source.append("  private static void discard(Object value) {\n");
+    source.append("  }\n");
+    source.append(classes);
+    source.append("}\n");
+    return source.toString();
+  }
+
+  private String function(Stmt.Function function, boolean isMethod, boolean isInitializer) {
+    Context enclosing = context;
+    context = new Context(declaresFunctions(function.body), isInitializer);
+    context.indent = 3;
+
+    int scope = beginScope();
+    int offset = 0;
+    if (context.materialized) {
+      line("Environment e" + scope + " = new Environment(closure, " + function.localCount + ");");
+    }
+    if (isMethod) {
+      declareLocal(scope, 0, "receiver");
+      offset = 1;
+    }
+    // JitCompiler 처럼 인자가 넷 이하면 인자 수에 맞는 invokeN 을 만든다
+    int arity = function.params.size();
+    boolean fixed = arity <= 4;
+    for (int i = 0; i < arity; i++) {
+      declareLocal(scope, i + offset, fixed ? "a" + i : "arguments[" + i + "]");
+    }
+    if (statements(function.body)) {
+      line(context.isInitializer ? "return receiver;" : "return null;");
+    }
+    endScope();
+
+    Context translated = context;
+    context = enclosing;
+
+    String name = "F" + nameCount++;
+    String type = "Fn" + name.substring(1);
+    classes.append('\n');
+    classes.append("  private static final class ").append(type).append(" extends JitCode {\n\n");
+    classes.append("    @Override\n");
+    classes.append("    Object invoke").append(fixed ? String.valueOf(arity) : "")
+        .append("(Interpreter interpreter, Environment closure, LoxInstance receiver");
+    if (fixed) {
+      for (int i = 0; i < arity; i++) {
+        classes.append(i == 0 ? ",\n        " : ", ").append("Object a").append(i);
+      }
+    } else {
+      classes.append(",\n        Object[] arguments");
+    }
+    classes.append(") {\n");
+    classes.append(translated.temps);
+    classes.append(translated.body);
+    classes.append("    }\n");
+    classes.append("  }\n");
+
+    StringBuilder params = new StringBuilder();
+    for (Token param : function.params) {
+      if (params.length() > 0) {
+        params.append(", ");
+      }
+      params.append(token(param));
+    }
+    field("Stmt.Function", name, "JitCode.declare(" + token(function.name) + ", List.of("
+        + params + "), new " + type + "())");
+    return name;
+  }
+
+  private static boolean declaresFunctions(List<Stmt> statements) {
+    for (Stmt statement : statements) {
+      if (declaresFunctions(statement)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static boolean declaresFunctions(Stmt statement) {
+    if (statement instanceof Stmt.Function || statement instanceof Stmt.Class) {
+      return true;
+    }
+    if (statement instanceof Stmt.Block block) {
+      return declaresFunctions(block.statements);
+    }
+    if (statement instanceof Stmt.If ifStmt) {
+      return declaresFunctions(ifStmt.thenBranch)
+          || (ifStmt.elseBranch != null && declaresFunctions(ifStmt.elseBranch));
+    }
+    if (statement instanceof Stmt.While whileStmt) {
+      return declaresFunctions(whileStmt.body);
+    }
+    return false;
+  }
+
+  // 자바는 도달할 수 없는 문장을 컴파일 오류로 보므로 return 뒤의 문장은 버린다
+  private boolean statements(List<Stmt> statements) {
+    for (Stmt statement : statements) {
+      if (!statement.accept(this)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private int beginScope() {
+    int scope = context.scopes.size();
+    context.scopes.add(scope);
+    return scope;
+  }
+
+  private void endScope() {
+    context.scopes.remove(context.scopes.size() - 1);
+  }
+
+  private String current() {
+    if (context.scopes.isEmpty()) {
+      return "interpreter.globals";
+    }
+    return "e" + (context.scopes.size() - 1);
+  }
+
+  private void declareLocal(int scope, int slot, String value) {
+    if (context.materialized) {
+      line("e" + scope + ".define(" + slot + ", " + value + ");");
+    } else {
+      line("Object l" + scope + "_" + slot + " = " + value + ";");
+    }
+  }
+
+  private void define(Token name, int slot, String value) {
+    if (slot == -1) {
+      line("interpreter.globals.define(" + quote(name.lexeme()) + ", " + value + ");");
+    } else {
+      declareLocal(context.scopes.size() - 1, slot, value);
+    }
+  }
+
+  private String load(Token name, int depth, int slot) {
+    if (depth == -1) {
+      return "JitCode.getGlobal(interpreter, " + token(name) + ")";
+    }
+    if (depth < context.scopes.size()) {
+      int scope = context.scopes.size() - 1 - depth;
+      if (context.materialized) {
+        return "e" + scope + ".getAt(0, " + slot + ")";
+      }
+      return "l" + scope + "_" + slot;
+    }
+    return "closure.getAt(" + (depth - context.scopes.size()) + ", " + slot + ")";
+  }
+
+  private String store(Token name, int depth, int slot, String value) {
+    if (depth == -1) {
+      return "JitCode.setGlobal(" + value + ", interpreter, " + token(name) + ")";
+    }
+    if (depth < context.scopes.size()) {
+      int scope = context.scopes.size() - 1 - depth;
+      if (context.materialized) {
+        return "JitCode.setAt(" + value + ", e" + scope + ", 0, " + slot + ")";
+      }
+      return "(l" + scope + "_" + slot + " = " + value + ")";
+    }
+    return "JitCode.setAt(" + value + ", closure, " + (depth - context.scopes.size()) + ", "
+        + slot + ")";
+  }
+
+  private String temp(String type, String prefix) {
+    String name = prefix + nameCount++;
+    context.temps.append("  ".repeat(context.indent)).append(type).append(' ').append(name)
+        .append(";\n");
+    return name;
+  }
+
+  private void line(String text) {
+    context.body.append("  ".repeat(context.indent)).append(text).append('\n');
+  }
+
+  private String token(Token token) {
+    String name = names.get(token);
+    if (name == null) {
+      name = "T" + nameCount++;
+      names.put(token, name);
+      field("Token", name, "new Token(TokenType." + token.type + ", " + quote(token.lexeme())
+          + ", null, " + token.line + ")");
+    }
+    return name;
+  }
+
+  // 캐시는 실행마다 인터프리터가 가지므로 정적 필드로 두지 않는다
+  private static String cache(int slot) {
+    return "interpreter.cache(" + slot + ")";
+  }
+
+  private void field(String type, String name, String initializer) {
+    fields.append("  private static final ").append(type).append(' ').append(name)
+        .append(" = ").append(initializer).append(";\n");
+  }
+
+  private static String quote(String text) {
+    StringBuilder quoted = new StringBuilder("\"");
+    for (char c : text.toCharArray()) {
+      switch (c) {
+        case '"' -> quoted.append("\\\"");
+        case '\\' -> quoted.append("\\\\");
+        case '\n' -> quoted.append("\\n");
+        case '\r' -> quoted.append("\\r");
+        case '\t' -> quoted.append("\\t");
+        default -> {
+          if (c < 0x20) {
+            quoted.append(String.format("\\u%04x", (int) c));
+          } else {
+            quoted.append(c);
+          }
+        }
+      }
+    }
+    return quoted.append('"').toString();
+  }
+
+  private String evaluate(Expr expr) {
+    return expr.accept(this);
+  }
+
+  private String condition(Expr expr) {
+    if (expr instanceof Expr.Grouping grouping) {
+      return condition(grouping.expression);
+    }
+    if (expr instanceof Expr.Unary unary && unary.operator.type == TokenType.BANG) {
+      return "!" + condition(unary.right);
+    }
+    if (expr instanceof Expr.Binary binary) {
+      String comparison = switch (binary.operator.type) {
+        case GREATER -> "greater";
+        case GREATER_EQUAL -> "greaterEqual";
+        case LESS -> "less";
+        case LESS_EQUAL -> "lessEqual";
+        default -> null;
+      };
+      if (comparison != null) {
+        return "JitCode." + comparison + "(" + evaluate(binary.left) + ", "
+            + evaluate(binary.right) + ", " + token(binary.operator) + ")";
+      }
+      if (binary.operator.type == TokenType.EQUAL_EQUAL) {
+        return "Interpreter.isEqual(" + evaluate(binary.left) + ", " + evaluate(binary.right)
+            + ")";
+      }
+      if (binary.operator.type == TokenType.BANG_EQUAL) {
+        return "!Interpreter.isEqual(" + evaluate(binary.left) + ", " + evaluate(binary.right)
+            + ")";
+      }
+    }
+    return "Interpreter.isTruthy(" + evaluate(expr) + ")";
+  }
+
+  // JitCode 호출 헬퍼 이름과 같은 규칙: 인자가 4개 이하면 값 그대로, 아니면 배열 하나로 넘긴다
+  private static String suffix(List<Expr> arguments) {
+    return arguments.size() <= 4 ? String.valueOf(arguments.size()) : "Array";
+  }
+
+  private String arguments(List<Expr> arguments) {
+    StringBuilder list = new StringBuilder(arguments.size() <= 4 ? "" : "new Object[] {");
+    for (int i = 0; i < arguments.size(); i++) {
+      if (i > 0) {
+        list.append(", ");
+      }
+      list.append(evaluate(arguments.get(i)));
+    }
+    if (arguments.size() > 4) {
+      list.append('}');
+    }
+    return list.append(arguments.isEmpty() ? "" : ", ").toString();
+  }
+
+  @Override
+  public String visitAssignExpr(Expr.Assign expr) {
+    return store(expr.name, expr.depth, expr.slot, evaluate(expr.value));
+  }
+
+  @Override
+  public String visitBinaryExpr(Expr.Binary expr) {
+    String arithmetic = switch (expr.operator.type) {
+      case PLUS -> "add";
+      case MINUS -> "subtract";
+      case STAR -> "multiply";
+      case SLASH -> "divide";
+      default -> null;
+    };
+    if (arithmetic == null) {
+      return "Boolean.valueOf(" + condition(expr) + ")";
+    }
+    return "JitCode." + arithmetic + "(" + evaluate(expr.left) + ", " + evaluate(expr.right)
+        + ", " + token(expr.operator) + ")";
+  }
+
+  @Override
+  public String visitCallExpr(Expr.Call expr) {
+    if (expr.callee instanceof Expr.Super superExpr) {
+      return "JitCode.invoke" + suffix(expr.arguments) + "(JitCode.superMethod("
+          + load(superExpr.keyword, superExpr.depth, superExpr.slot) + ", "
+          + token(superExpr.method) + "), "
+          + load(superExpr.keyword, superExpr.depth - 1, 0) + ", "
+          + arguments(expr.arguments) + "interpreter, " + token(expr.paren) + ")";
+    }
+
+    if (expr.callee instanceof Expr.Get get) {
+      String receiver = temp("LoxInstance", "r");
+      String method = temp("LoxFunction", "m");
+      String name = token(get.name);
+      String cache = cache(expr.cacheSlot);
+      return "JitCode.invoke" + suffix(expr.arguments) + "(" + method + " = JitCode.method(" + receiver + " = JitCode.instance("
+          + evaluate(get.object) + ", " + name + ", \"Only instances have properties.\"), "
+          + name + ", " + cache + "), " + method + " != null ? " + receiver
+          + " : JitCode.field(" + receiver + ", " + name + ", " + cache + "), "
+          + arguments(expr.arguments) + "interpreter, " + token(expr.paren) + ")";
+    }
+
+    return "JitCode.call" + suffix(expr.arguments) + "(" + evaluate(expr.callee) + ", "
+        + arguments(expr.arguments) + "interpreter, " + token(expr.paren) + ")";
+  }
+
+  @Override
+  public String visitGetExpr(Expr.Get expr) {
+    return "JitCode.get(" + evaluate(expr.object) + ", " + token(expr.name) + ", "
+        + cache(expr.cacheSlot) + ")";
+  }
+
+  @Override
+  public String visitGetIndexExpr(Expr.GetIndex expr) {
+    return "LoxList.getIndex(" + evaluate(expr.object) + ", " + evaluate(expr.index) + ", "
+        + token(expr.bracket) + ")";
+  }
+
+  @Override
+  public String visitSetIndexExpr(Expr.SetIndex expr) {
+    return "LoxList.setIndex(" + evaluate(expr.object) + ", " + evaluate(expr.index) + ", "
+        + evaluate(expr.value) + ", " + token(expr.bracket) + ")";
+  }
+
+  @Override
+  public String visitGroupingExpr(Expr.Grouping expr) {
+    return evaluate(expr.expression);
+  }
+
+  @Override
+  public String visitLiteralExpr(Expr.Literal expr) {
+    if (expr.value == null) {
+      return "(Object) null";
+    }
+    if (expr.value instanceof Boolean) {
+      return (boolean) expr.value ? "Boolean.TRUE" : "Boolean.FALSE";
+    }
+    if (expr.value instanceof String string) {
+      return quote(string);
+    }
+    String name = names.get(expr);
+    if (name == null) {
+      name = "D" + nameCount++;
+      names.put(expr, name);
+      field("Object", name, number((double) expr.value));
+    }
+    return name;
+  }
+
+  // 상수 접기로 무한대나 NaN 리터럴이 생길 수 있다
+  private static String number(double value) {
+    if (Double.isNaN(value)) {
+      return "Double.NaN";
+    }
+    if (Double.isInfinite(value)) {
+      return value > 0 ? "Double.POSITIVE_INFINITY" : "Double.NEGATIVE_INFINITY";
+    }
+    return Double.toString(value);
+  }
+
+  @Override
+  public String visitLogicalExpr(Expr.Logical expr) {
+    String left = temp("Object", "t");
+    String test = "Interpreter.isTruthy(" + left + " = " + evaluate(expr.left) + ")";
+    if (expr.operator.type == TokenType.OR) {
+      return "(" + test + " ? " + left + " : " + evaluate(expr.right) + ")";
+    }
+    return "(" + test + " ? " + evaluate(expr.right) + " : " + left + ")";
+  }
+
+  @Override
+  public String visitSetExpr(Expr.Set expr) {
+    String name = token(expr.name);
+    return "JitCode.set(JitCode.instance(" + evaluate(expr.object) + ", " + name
+        + ", \"Only instances have fields.\"), " + evaluate(expr.value) + ", " + name + ", "
+        + cache(expr.cacheSlot) + ")";
+  }
+
+  @Override
+  public String visitSuperExpr(Expr.Super expr) {
+    return "JitCode.bindSuper(" + load(expr.keyword, expr.depth, expr.slot) + ", "
+        + load(expr.keyword, expr.depth - 1, 0) + ", " + token(expr.method) + ")";
+  }
+
+  @Override
+  public String visitThisExpr(Expr.This expr) {
+    return load(expr.keyword, expr.depth, expr.slot);
+  }
+
+  @Override
+  public String visitUnaryExpr(Expr.Unary expr) {
+    if (expr.operator.type == TokenType.BANG) {
+      return "Boolean.valueOf(" + condition(expr) + ")";
+    }
+    return "JitCode.negate(" + evaluate(expr.right) + ", " + token(expr.operator) + ")";
+  }
+
+  @Override
+  public String visitVariableExpr(Expr.Variable expr) {
+    return load(expr.name, expr.depth, expr.slot);
+  }
+
+  @Override
+  public Boolean visitBlockStmt(Stmt.Block stmt) {
+    String enclosing = current();
+    line("{");
+    context.indent++;
+    // 평평한 블록은 바깥 스코프의 슬롯을 쓴다
+    if (stmt.flat) {
+      boolean completes = statements(stmt.statements);
+      context.indent--;
+      line("}");
+      return completes;
+    }
+    int scope = beginScope();
+    if (context.materialized) {
+      line("Environment e" + scope + " = new Environment(" + enclosing + ", " + stmt.localCount
+          + ");");
+    }
+    boolean completes = statements(stmt.statements);
+    endScope();
+    context.indent--;
+    line("}");
+    return completes;
+  }
+
+  @Override
+  public Boolean visitClassStmt(Stmt.Class stmt) {
+    line("{");
+    context.indent++;
+    String superclass = "null";
+    if (stmt.superclass != null) {
+      superclass = "superclass";
+      line("LoxClass superclass = JitCode.superclass(" + evaluate(stmt.superclass) + ", "
+          + token(stmt.superclass.name) + ");");
+    }
+    define(stmt.name, stmt.slot, "null");
+
+    String environment = current();
+    if (stmt.superclass != null) {
+      line("Environment methodScope = new Environment(" + environment + ", 1);");
+      line("methodScope.define(0, superclass);");
+      environment = "methodScope";
+    }
+
+    line("SymbolMap<LoxFunction> methods = new SymbolMap<>();");
+    for (Stmt.Function method : stmt.methods) {
+      boolean isInitializer = method.name.lexeme().equals("init");
+      String declaration = function(method, true, isInitializer);
+      line("methods.put(Symbol.of(" + quote(method.name.lexeme()) + "), new LoxFunction(" + declaration
+          + ", " + environment + ", " + isInitializer + ", true, null));");
+    }
+    define(stmt.name, stmt.slot, "new LoxClass(" + quote(stmt.name.lexeme()) + ", " + superclass
+        + ", methods, interpreter.globals)");
+    context.indent--;
+    line("}");
+    return true;
+  }
+
+  @Override
+  public Boolean visitExpressionStmt(Stmt.Expression stmt) {
+    String expression = evaluate(stmt.expression);
+    if (stmt.expression instanceof Expr.Call || stmt.expression instanceof Expr.Set
+        || stmt.expression instanceof Expr.SetIndex) {
+      line(expression + ";");
+    } else {
+      line("discard(" + expression + ");");
+    }
+    return true;
+  }
+
+  @Override
+  public Boolean visitPrintStmt(Stmt.Print stmt) {
+    line("JitCode.print(" + evaluate(stmt.expression) + ", interpreter);");
+    return true;
+  }
+
+  @Override
+  public Boolean visitReturnStmt(Stmt.Return stmt) {
+    if (context.isInitializer) {
+      line("return receiver;");
+    } else if (stmt.value != null) {
+      line("return " + evaluate(stmt.value) + ";");
+    } else {
+      line("return null;");
+    }
+    return false;
+  }
+
+  @Override
+  public Boolean visitFunctionStmt(Stmt.Function stmt) {
+    String declaration = function(stmt, false, false);
+    define(stmt.name, stmt.slot, "new LoxFunction(" + declaration + ", " + current()
+        + ", false)");
+    return true;
+  }
+
+  @Override
+  public Boolean visitIfStmt(Stmt.If stmt) {
+    line("if (" + condition(stmt.condition) + ") {");
+    boolean completes = branch(stmt.thenBranch);
+    if (stmt.elseBranch == null) {
+      line("}");
+      return true;
+    }
+    line("} else {");
+    completes |= branch(stmt.elseBranch);
+    line("}");
+    return completes;
+  }
+
+  private boolean branch(Stmt stmt) {
+    context.indent++;
+    boolean completes = stmt.accept(this);
+    context.indent--;
+    return completes;
+  }
+
+  @Override
+  public Boolean visitVarStmt(Stmt.Var stmt) {
+    String value = stmt.initializer != null ? evaluate(stmt.initializer) : "null";
+    define(stmt.name, stmt.slot, value);
+    return true;
+  }
+
+  @Override
+  public Boolean visitWhileStmt(Stmt.While stmt) {
+    line("while (" + condition(stmt.condition) + ") {");
+    context.indent++;
+    line("interpreter.poll();");
+    context.indent--;
+    branch(stmt.body);
+    line("}");
+    return true;
+  }
+}
@@ -0,0 +1,48 @@
+package lox;
+
+import java.lang.invoke.MethodHandles;
+
+// 호출 횟수와 루프 반복 횟수가 임계값을 넘은 함수를 JVM 클래스로 컴파일한다
+final class Jit {
+
+  static final int THRESHOLD = 1000;
+  private static final int GAVE_UP = -1;
+
+  private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+
+  private Jit() {
+  }
+
+  static void profile(Stmt.Function declaration, boolean isMethod, boolean isInitializer,
+      int backEdges) {
+    // 재귀 호출 중인 트리 순회 프레임이 끝나면서 다시 들어올 수 있다
+    if (declaration.hotness == GAVE_UP || declaration.compiled != null) {
+      return;
+    }
+    declaration.hotness = (int) Math.min(THRESHOLD, (long) declaration.hotness + 1 + backEdges);
+    if (declaration.hotness < THRESHOLD) {
+      return;
+    }
+
+    JitCode compiled = compile(declaration, isMethod, isInitializer);
+    if (compiled == null) {
+      declaration.hotness = GAVE_UP;
+    }
+    declaration.compiled = compiled;
+  }
+
+  // 지원하지 않는 구문이 있거나 검증에 실패하면 null 을 돌려주고 트리 순회 실행을 계속한다
+  private static JitCode compile(Stmt.Function declaration, boolean isMethod,
+      boolean isInitializer) {
+    JitCompiler compiler = new JitCompiler(declaration, isMethod, isInitializer);
+    try {
+      byte[] bytes = compiler.compile("lox/Jit$" + declaration.name.lexeme());
+      Class<?> type = LOOKUP.defineHiddenClass(bytes, true).lookupClass();
+      return (JitCode) type.getDeclaredConstructor(Object[].class)
+          .newInstance((Object) compiler.constants());
+    } catch (JitCompiler.Unsupported | IllegalStateException | ReflectiveOperationException
+             | LinkageError e) {
+      return null;
+    }
+  }
+}
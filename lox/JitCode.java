@@ -0,0 +1,305 @@
+package lox;
+
+import java.util.List;
+
+// JIT 와 AOT 번역기가 만든 함수 본문의 상위 클래스. 생성된 코드는 아래 정적 메서드를 호출한다
+abstract class JitCode {
+
+  final Object[] constants;
+
+  JitCode() {
+    this(null);
+  }
+
+  JitCode(Object[] constants) {
+    this.constants = constants;
+  }
+
+  // AOT 번역 코드가 함수 선언 없이 LoxFunction 을 만들 때 쓴다
+  static Stmt.Function declare(Token name, List<Token> params, JitCode code) {
+    Stmt.Function declaration = new Stmt.Function(name, params, List.of());
+    declaration.compiled = code;
+    return declaration;
+  }
+
+  // 인자가 넷 이하인 함수는 인자 수에 맞는 invokeN 하나만 구현해 호출마다 배열을 만들지 않는다.
+  // 그보다 많으면 이 메서드를 구현한다. 배열로 부르는 쪽은 여기서 풀어 invokeN 으로 넘긴다
+  Object invoke(Interpreter interpreter, Environment closure, LoxInstance receiver,
+      Object[] arguments) {
+    return switch (arguments.length) {
+      case 0 -> invoke0(interpreter, closure, receiver);
+      case 1 -> invoke1(interpreter, closure, receiver, arguments[0]);
+      case 2 -> invoke2(interpreter, closure, receiver, arguments[0], arguments[1]);
+      case 3 -> invoke3(interpreter, closure, receiver, arguments[0], arguments[1], arguments[2]);
+      case 4 -> invoke4(interpreter, closure, receiver, arguments[0], arguments[1], arguments[2],
+          arguments[3]);
+      default -> throw arity(arguments.length);
+    };
+  }
+
+  Object invoke0(Interpreter interpreter, Environment closure, LoxInstance receiver) {
+    throw arity(0);
+  }
+
+  Object invoke1(Interpreter interpreter, Environment closure, LoxInstance receiver, Object a) {
+    throw arity(1);
+  }
+
+  Object invoke2(Interpreter interpreter, Environment closure, LoxInstance receiver, Object a,
+      Object b) {
+    throw arity(2);
+  }
+
+  Object invoke3(Interpreter interpreter, Environment closure, LoxInstance receiver, Object a,
+      Object b, Object c) {
+    throw arity(3);
+  }
+
+  Object invoke4(Interpreter interpreter, Environment closure, LoxInstance receiver, Object a,
+      Object b, Object c, Object d) {
+    throw arity(4);
+  }
+
+  // 호출하는 쪽이 인자 수를 확인하므로 컴파일한 것과 다른 진입점은 부르지 않는다
+  private static IllegalStateException arity(int count) {
+    return new IllegalStateException("No compiled entry point for " + count + " arguments.");
+  }
+
+  static Object add(Object left, Object right, Token operator) {
+    if (left instanceof Double && right instanceof Double) {
+      return (double) left + (double) right;
+    }
+    if (left instanceof String && right instanceof String) {
+      return (String) left + right;
+    }
+    throw new RuntimeError(operator, "Operands must be two numbers or two strings");
+  }
+
+  static Object subtract(Object left, Object right, Token operator) {
+    checkNumberOperands(operator, left, right);
+    return (double) left - (double) right;
+  }
+
+  static Object multiply(Object left, Object right, Token operator) {
+    checkNumberOperands(operator, left, right);
+    return (double) left * (double) right;
+  }
+
+  static Object divide(Object left, Object right, Token operator) {
+    checkNumberOperands(operator, left, right);
+    return (double) left / (double) right;
+  }
+
+  static boolean greater(Object left, Object right, Token operator) {
+    checkNumberOperands(operator, left, right);
+    return (double) left > (double) right;
+  }
+
+  static boolean greaterEqual(Object left, Object right, Token operator) {
+    checkNumberOperands(operator, left, right);
+    return (double) left >= (double) right;
+  }
+
+  static boolean less(Object left, Object right, Token operator) {
+    checkNumberOperands(operator, left, right);
+    return (double) left < (double) right;
+  }
+
+  static boolean lessEqual(Object left, Object right, Token operator) {
+    checkNumberOperands(operator, left, right);
+    return (double) left <= (double) right;
+  }
+
+  static Object negate(Object operand, Token operator) {
+    if (!(operand instanceof Double)) {
+      throw new RuntimeError(operator, "Operand must be a number");
+    }
+    return -(double) operand;
+  }
+
+  static void print(Object value, Interpreter interpreter) {
+    interpreter.out.println(Interpreter.stringify(value));
+  }
+
+  static Object getGlobal(Interpreter interpreter, Token name) {
+    return interpreter.globals.get(name);
+  }
+
+  static Object setGlobal(Object value, Interpreter interpreter, Token name) {
+    interpreter.globals.assign(name, value);
+    return value;
+  }
+
+  static Object setAt(Object value, Environment environment, int distance, int slot) {
+    environment.assignAt(distance, slot, value);
+    return value;
+  }
+
+  static Object get(Object object, Token name, InlineCache cache) {
+    if (object instanceof LoxInstance instance) {
+      return instance.get(name, cache);
+    }
+    throw new RuntimeError(name, "Only instances have properties.");
+  }
+
+  static LoxInstance instance(Object object, Token name, String message) {
+    if (object instanceof LoxInstance instance) {
+      return instance;
+    }
+    throw new RuntimeError(name, message);
+  }
+
+  static Object set(LoxInstance instance, Object value, Token name, InlineCache cache) {
+    instance.set(name, value, cache);
+    return value;
+  }
+
+  static LoxFunction method(LoxInstance instance, Token name, InlineCache cache) {
+    return instance.method(name, cache);
+  }
+
+  static Object field(LoxInstance instance, Token name, InlineCache cache) {
+    return instance.get(name, cache);
+  }
+
+  static LoxFunction superMethod(Object superclass, Token method) {
+    LoxFunction found = ((LoxClass) superclass).findMethod(method.symbol());
+    if (found == null) {
+      throw new RuntimeError(method, "Undefined property '" + method.lexeme() + "'");
+    }
+    return found;
+  }
+
+  static Object bindSuper(Object superclass, Object receiver, Token method) {
+    return superMethod(superclass, method).bind((LoxInstance) receiver);
+  }
+
+  static LoxClass superclass(Object value, Token name) {
+    if (value instanceof LoxClass klass) {
+      return klass;
+    }
+    throw new RuntimeError(name, "Superclass must be a class.");
+  }
+
+  // method 가 null 이면 callee 는 필드 값이고, 아니면 수신 객체다.
+  // 인자가 4개 이하면 배열 없이 값 그대로 넘긴다
+  static Object invoke0(LoxFunction method, Object callee, Interpreter interpreter, Token paren) {
+    if (method == null) {
+      return call0(callee, interpreter, paren);
+    }
+    Interpreter.checkArity(paren, method, 0);
+    return method.invoke0(interpreter, (LoxInstance) callee);
+  }
+
+  static Object invoke1(LoxFunction method, Object callee, Object a, Interpreter interpreter,
+      Token paren) {
+    if (method == null) {
+      return call1(callee, a, interpreter, paren);
+    }
+    Interpreter.checkArity(paren, method, 1);
+    return method.invoke1(interpreter, (LoxInstance) callee, a);
+  }
+
+  static Object invoke2(LoxFunction method, Object callee, Object a, Object b,
+      Interpreter interpreter, Token paren) {
+    if (method == null) {
+      return call2(callee, a, b, interpreter, paren);
+    }
+    Interpreter.checkArity(paren, method, 2);
+    return method.invoke2(interpreter, (LoxInstance) callee, a, b);
+  }
+
+  static Object invoke3(LoxFunction method, Object callee, Object a, Object b, Object c,
+      Interpreter interpreter, Token paren) {
+    if (method == null) {
+      return call3(callee, a, b, c, interpreter, paren);
+    }
+    Interpreter.checkArity(paren, method, 3);
+    return method.invoke3(interpreter, (LoxInstance) callee, a, b, c);
+  }
+
+  static Object invoke4(LoxFunction method, Object callee, Object a, Object b, Object c, Object d,
+      Interpreter interpreter, Token paren) {
+    if (method == null) {
+      return call4(callee, a, b, c, d, interpreter, paren);
+    }
+    Interpreter.checkArity(paren, method, 4);
+    return method.invoke4(interpreter, (LoxInstance) callee, a, b, c, d);
+  }
+
+  static Object invokeArray(LoxFunction method, Object callee, Object[] arguments,
+      Interpreter interpreter, Token paren) {
+    if (method == null) {
+      return callArray(callee, arguments, interpreter, paren);
+    }
+    Interpreter.checkArity(paren, method, arguments.length);
+    return method.invokeArray(interpreter, (LoxInstance) callee, arguments);
+  }
+
+  // 자바로 구현한 함수의 인자 오류에는 호출 위치를 붙인다
+  static Object call0(Object callee, Interpreter interpreter, Token paren) {
+    try {
+      return callable(callee, 0, paren).call0(interpreter);
+    } catch (NativeError error) {
+      throw error.at(paren);
+    }
+  }
+
+  static Object call1(Object callee, Object a, Interpreter interpreter, Token paren) {
+    try {
+      return callable(callee, 1, paren).call1(interpreter, a);
+    } catch (NativeError error) {
+      throw error.at(paren);
+    }
+  }
+
+  static Object call2(Object callee, Object a, Object b, Interpreter interpreter, Token paren) {
+    try {
+      return callable(callee, 2, paren).call2(interpreter, a, b);
+    } catch (NativeError error) {
+      throw error.at(paren);
+    }
+  }
+
+  static Object call3(Object callee, Object a, Object b, Object c, Interpreter interpreter,
+      Token paren) {
+    try {
+      return callable(callee, 3, paren).call3(interpreter, a, b, c);
+    } catch (NativeError error) {
+      throw error.at(paren);
+    }
+  }
+
+  static Object call4(Object callee, Object a, Object b, Object c, Object d,
+      Interpreter interpreter, Token paren) {
+    try {
+      return callable(callee, 4, paren).call4(interpreter, a, b, c, d);
+    } catch (NativeError error) {
+      throw error.at(paren);
+    }
+  }
+
+  static Object callArray(Object callee, Object[] arguments, Interpreter interpreter,
+      Token paren) {
+    try {
+      return callable(callee, arguments.length, paren).callArray(interpreter, arguments);
+    } catch (NativeError error) {
+      throw error.at(paren);
+    }
+  }
+
+  private static LoxCallable callable(Object callee, int count, Token paren) {
+    if (!(callee instanceof LoxCallable function)) {
+      throw new RuntimeError(paren, "Can only call functions and classes");
+    }
+    Interpreter.checkArity(paren, function, count);
+    return function;
+  }
+
+  private static void checkNumberOperands(Token operator, Object left, Object right) {
+    if (left instanceof Double && right instanceof Double) {
+      return;
+    }
+    throw new RuntimeError(operator, "Operands must be numbers");
+  }
+}
@@ -0,0 +1,536 @@
+package lox;
+
+import static lox.ClassFileWriter.*;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import lox.ClassFileWriter.Code;
+import lox.ClassFileWriter.Label;
+
+// 함수 하나를 JitCode 하위 클래스로 옮긴다. 지원하지 않는 구문을 만나면 Unsupported 를 던진다
+final class JitCompiler implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
+
+  static final class Unsupported extends RuntimeException {
+
+    Unsupported(String message) {
+      super(message, null, false, false);
+    }
+  }
+
+  private static final String JIT_CODE = "lox/JitCode";
+  private static final String OBJECT = "Ljava/lang/Object;";
+  private static final String TOKEN = "Llox/Token;";
+  private static final String ARRAY = "[Ljava/lang/Object;";
+  private static final String INTERPRETER_TYPE = "Llox/Interpreter;";
+  private static final String INVOKE_PREFIX = "(" + INTERPRETER_TYPE + "Llox/Environment;"
+      + "Llox/LoxInstance;";
+  // 이보다 인자가 많은 함수만 인자를 배열로 받는다
+  private static final int MAX_FIXED_ARITY = 4;
+  private static final String CACHE = "Llox/InlineCache;";
+  private static final String MEMBER = "(Llox/LoxInstance;" + TOKEN + CACHE + ")";
+  private static final String ARITHMETIC = "(" + OBJECT + OBJECT + TOKEN + ")" + OBJECT;
+  private static final String COMPARISON = "(" + OBJECT + OBJECT + TOKEN + ")Z";
+
+  // invoke 메서드의 JVM 지역 변수 배치. ARGUMENTS 에는 인자들이 차례로, 또는 인자 배열 하나가
+  // 놓이고 Lox 지역 변수는 그 뒤부터 놓인다
+  private static final int INTERPRETER = 1;
+  private static final int CLOSURE = 2;
+  private static final int RECEIVER = 3;
+  private static final int ARGUMENTS = 4;
+
+  private final Stmt.Function function;
+  private final boolean isMethod;
+  private final boolean isInitializer;
+  private final List<Object> constants = new ArrayList<>();
+  private final Map<Object, Integer> constantIndex = new IdentityHashMap<>();
+  private final List<Integer> scopes = new ArrayList<>();
+  private Code code;
+  private int nextLocal;
+
+  JitCompiler(Stmt.Function function, boolean isMethod, boolean isInitializer) {
+    this.function = function;
+    this.isMethod = isMethod;
+    this.isInitializer = isInitializer;
+  }
+
+  byte[] compile(String className) {
+    ClassFileWriter writer = new ClassFileWriter(className, JIT_CODE);
+    Code init = writer.method(0, "<init>", "([Ljava/lang/Object;)V");
+    init.aload(0);
+    init.aload(1);
+    init.invokespecial(JIT_CODE, "<init>", "([Ljava/lang/Object;)V");
+    init.op(RETURN, 0);
+
+    int arity = function.params.size();
+    boolean fixed = arity <= MAX_FIXED_ARITY;
+    code = fixed
+        ? writer.method(0, "invoke" + arity, INVOKE_PREFIX + OBJECT.repeat(arity) + ")" + OBJECT)
+        : writer.method(0, "invoke", INVOKE_PREFIX + ARRAY + ")" + OBJECT);
+    nextLocal = ARGUMENTS + (fixed ? arity : 1);
+    int base = beginScope(function.localCount);
+    int offset = 0;
+    if (isMethod) {
+      code.aload(RECEIVER);
+      code.astore(base);
+      offset = 1;
+    }
+    for (int i = 0; i < arity; i++) {
+      if (fixed) {
+        code.aload(ARGUMENTS + i);
+      } else {
+        code.aload(ARGUMENTS);
+        code.iconst(i);
+        code.op(AALOAD, -1);
+      }
+      code.astore(base + offset + i);
+    }
+    clearLocals(base + offset + arity, base + function.localCount);
+
+    for (Stmt statement : function.body) {
+      statement.accept(this);
+    }
+    emitReturn();
+    endScope();
+
+    return writer.toByteArray();
+  }
+
+  Object[] constants() {
+    return constants.toArray();
+  }
+
+  private int beginScope(int localCount) {
+    int base = nextLocal;
+    scopes.add(base);
+    nextLocal += localCount;
+    return base;
+  }
+
+  private void endScope() {
+    nextLocal = scopes.remove(scopes.size() - 1);
+  }
+
+  // 타입 추론 검증기는 값이 들어간 적 없는 지역 변수를 읽는 코드를 거부한다
+  private void clearLocals(int from, int to) {
+    for (int local = from; local < to; local++) {
+      code.op(ACONST_NULL, 1);
+      code.astore(local);
+    }
+  }
+
+  private void emitReturn() {
+    if (isInitializer) {
+      code.aload(RECEIVER);
+    } else {
+      code.op(ACONST_NULL, 1);
+    }
+    code.op(ARETURN, -1);
+  }
+
+  // 인라인 캐시는 실행마다 따로 있으므로 상수로 박지 않고 인터프리터에서 꺼낸다
+  private void cache(int slot) {
+    code.aload(INTERPRETER);
+    code.iconst(slot);
+    code.invokevirtual("lox/Interpreter", "cache", "(I)" + CACHE);
+  }
+
+  private void constant(Object value, String type) {
+    Integer index = constantIndex.get(value);
+    if (index == null) {
+      index = constants.size();
+      constants.add(value);
+      constantIndex.put(value, index);
+    }
+    if (index > Short.MAX_VALUE) {
+      throw new Unsupported("Too many constants.");
+    }
+    code.aload(0);
+    code.getfield(JIT_CODE, "constants", "[" + OBJECT);
+    code.iconst(index);
+    code.op(AALOAD, -1);
+    if (type != null) {
+      code.checkcast(type);
+    }
+  }
+
+  private void load(Token name, int depth, int slot) {
+    if (depth == -1) {
+      code.aload(INTERPRETER);
+      constant(name, "lox/Token");
+      code.invokestatic(JIT_CODE, "getGlobal", "(" + INTERPRETER_TYPE + TOKEN + ")" + OBJECT);
+    } else if (depth < scopes.size()) {
+      code.aload(scopes.get(scopes.size() - 1 - depth) + slot);
+    } else {
+      code.aload(CLOSURE);
+      code.iconst(depth - scopes.size());
+      code.iconst(slot);
+      code.invokevirtual("lox/Environment", "getAt", "(II)" + OBJECT);
+    }
+  }
+
+  // 대입식의 값은 스택에 남겨 둔다
+  private void store(Token name, int depth, int slot) {
+    if (depth == -1) {
+      code.aload(INTERPRETER);
+      constant(name, "lox/Token");
+      code.invokestatic(JIT_CODE, "setGlobal",
+          "(" + OBJECT + INTERPRETER_TYPE + TOKEN + ")" + OBJECT);
+    } else if (depth < scopes.size()) {
+      code.op(DUP, 1);
+      code.astore(scopes.get(scopes.size() - 1 - depth) + slot);
+    } else {
+      code.aload(CLOSURE);
+      code.iconst(depth - scopes.size());
+      code.iconst(slot);
+      code.invokestatic(JIT_CODE, "setAt", "(" + OBJECT + "Llox/Environment;II)" + OBJECT);
+    }
+  }
+
+  private void evaluate(Expr expr) {
+    expr.accept(this);
+  }
+
+  // 조건식은 Boolean 을 만들지 않고 int 로 바로 분기한다
+  private void condition(Expr expr) {
+    if (expr instanceof Expr.Grouping grouping) {
+      condition(grouping.expression);
+      return;
+    }
+    if (expr instanceof Expr.Unary unary && unary.operator.type == TokenType.BANG) {
+      condition(unary.right);
+      code.iconst(1);
+      code.op(IXOR, -1);
+      return;
+    }
+    if (expr instanceof Expr.Binary binary) {
+      String comparison = switch (binary.operator.type) {
+        case GREATER -> "greater";
+        case GREATER_EQUAL -> "greaterEqual";
+        case LESS -> "less";
+        case LESS_EQUAL -> "lessEqual";
+        default -> null;
+      };
+      if (comparison != null) {
+        evaluate(binary.left);
+        evaluate(binary.right);
+        constant(binary.operator, "lox/Token");
+        code.invokestatic(JIT_CODE, comparison, COMPARISON);
+        return;
+      }
+      if (binary.operator.type == TokenType.EQUAL_EQUAL
+          || binary.operator.type == TokenType.BANG_EQUAL) {
+        evaluate(binary.left);
+        evaluate(binary.right);
+        code.invokestatic("lox/Interpreter", "isEqual", "(" + OBJECT + OBJECT + ")Z");
+        if (binary.operator.type == TokenType.BANG_EQUAL) {
+          code.iconst(1);
+          code.op(IXOR, -1);
+        }
+        return;
+      }
+    }
+    evaluate(expr);
+    code.invokestatic("lox/Interpreter", "isTruthy", "(" + OBJECT + ")Z");
+  }
+
+  private void boxBoolean() {
+    code.invokestatic("java/lang/Boolean", "valueOf", "(Z)Ljava/lang/Boolean;");
+  }
+
+  // 인자가 4개 이하면 스택에 그대로 쌓고, 그보다 많으면 배열 하나에 담는다.
+  // 반환값은 JitCode 호출 헬퍼 이름의 접미사와 인자 부분 디스크립터다
+  private String[] arguments(List<Expr> arguments) {
+    if (arguments.size() <= 4) {
+      for (Expr argument : arguments) {
+        evaluate(argument);
+      }
+      return new String[] {String.valueOf(arguments.size()), OBJECT.repeat(arguments.size())};
+    }
+    code.iconst(arguments.size());
+    code.anewarray("java/lang/Object");
+    for (int i = 0; i < arguments.size(); i++) {
+      code.op(DUP, 1);
+      code.iconst(i);
+      evaluate(arguments.get(i));
+      code.op(AASTORE, -3);
+    }
+    return new String[] {"Array", ARRAY};
+  }
+
+  @Override
+  public Void visitAssignExpr(Expr.Assign expr) {
+    evaluate(expr.value);
+    store(expr.name, expr.depth, expr.slot);
+    return null;
+  }
+
+  @Override
+  public Void visitBinaryExpr(Expr.Binary expr) {
+    String arithmetic = switch (expr.operator.type) {
+      case PLUS -> "add";
+      case MINUS -> "subtract";
+      case STAR -> "multiply";
+      case SLASH -> "divide";
+      default -> null;
+    };
+    if (arithmetic == null) {
+      condition(expr);
+      boxBoolean();
+      return null;
+    }
+    evaluate(expr.left);
+    evaluate(expr.right);
+    constant(expr.operator, "lox/Token");
+    code.invokestatic(JIT_CODE, arithmetic, ARITHMETIC);
+    return null;
+  }
+
+  @Override
+  public Void visitCallExpr(Expr.Call expr) {
+    if (expr.callee instanceof Expr.Super) {
+      throw new Unsupported("super call");
+    }
+
+    if (expr.callee instanceof Expr.Get get) {
+      evaluate(get.object);
+      constant(get.name, "lox/Token");
+      code.ldc("Only instances have properties.");
+      code.invokestatic(JIT_CODE, "instance",
+          "(" + OBJECT + TOKEN + "Ljava/lang/String;)Llox/LoxInstance;");
+      code.op(DUP, 1);
+      constant(get.name, "lox/Token");
+      cache(expr.cacheSlot);
+      code.invokestatic(JIT_CODE, "method", MEMBER + "Llox/LoxFunction;");
+      code.op(DUP_X1, 1);
+      Label method = new Label();
+      code.jump(IFNONNULL, method);
+      constant(get.name, "lox/Token");
+      cache(expr.cacheSlot);
+      code.invokestatic(JIT_CODE, "field", MEMBER + OBJECT);
+      code.mark(method);
+      String[] arguments = arguments(expr.arguments);
+      code.aload(INTERPRETER);
+      constant(expr.paren, "lox/Token");
+      code.invokestatic(JIT_CODE, "invoke" + arguments[0], "(Llox/LoxFunction;" + OBJECT
+          + arguments[1] + INTERPRETER_TYPE + TOKEN + ")" + OBJECT);
+      return null;
+    }
+
+    evaluate(expr.callee);
+    String[] arguments = arguments(expr.arguments);
+    code.aload(INTERPRETER);
+    constant(expr.paren, "lox/Token");
+    code.invokestatic(JIT_CODE, "call" + arguments[0], "(" + OBJECT + arguments[1]
+        + INTERPRETER_TYPE + TOKEN + ")" + OBJECT);
+    return null;
+  }
+
+  @Override
+  public Void visitGetExpr(Expr.Get expr) {
+    evaluate(expr.object);
+    constant(expr.name, "lox/Token");
+    cache(expr.cacheSlot);
+    code.invokestatic(JIT_CODE, "get", "(" + OBJECT + TOKEN + CACHE + ")" + OBJECT);
+    return null;
+  }
+
+  @Override
+  public Void visitGetIndexExpr(Expr.GetIndex expr) {
+    evaluate(expr.object);
+    evaluate(expr.index);
+    constant(expr.bracket, "lox/Token");
+    code.invokestatic("lox/LoxList", "getIndex", "(" + OBJECT + OBJECT + TOKEN + ")" + OBJECT);
+    return null;
+  }
+
+  @Override
+  public Void visitSetIndexExpr(Expr.SetIndex expr) {
+    evaluate(expr.object);
+    evaluate(expr.index);
+    evaluate(expr.value);
+    constant(expr.bracket, "lox/Token");
+    code.invokestatic("lox/LoxList", "setIndex",
+        "(" + OBJECT + OBJECT + OBJECT + TOKEN + ")" + OBJECT);
+    return null;
+  }
+
+  @Override
+  public Void visitGroupingExpr(Expr.Grouping expr) {
+    evaluate(expr.expression);
+    return null;
+  }
+
+  @Override
+  public Void visitLiteralExpr(Expr.Literal expr) {
+    if (expr.value == null) {
+      code.op(ACONST_NULL, 1);
+    } else if (expr.value instanceof Boolean) {
+      code.getstatic("java/lang/Boolean", (boolean) expr.value ? "TRUE" : "FALSE",
+          "Ljava/lang/Boolean;");
+    } else if (expr.value instanceof String string) {
+      code.ldc(string);
+    } else {
+      constant(expr.value, null);
+    }
+    return null;
+  }
+
+  @Override
+  public Void visitLogicalExpr(Expr.Logical expr) {
+    evaluate(expr.left);
+    code.op(DUP, 1);
+    code.invokestatic("lox/Interpreter", "isTruthy", "(" + OBJECT + ")Z");
+    Label end = new Label();
+    code.jump(expr.operator.type == TokenType.OR ? IFNE : IFEQ, end);
+    code.op(POP, -1);
+    evaluate(expr.right);
+    code.mark(end);
+    return null;
+  }
+
+  @Override
+  public Void visitSetExpr(Expr.Set expr) {
+    evaluate(expr.object);
+    constant(expr.name, "lox/Token");
+    code.ldc("Only instances have fields.");
+    code.invokestatic(JIT_CODE, "instance",
+        "(" + OBJECT + TOKEN + "Ljava/lang/String;)Llox/LoxInstance;");
+    evaluate(expr.value);
+    constant(expr.name, "lox/Token");
+    cache(expr.cacheSlot);
+    code.invokestatic(JIT_CODE, "set", "(Llox/LoxInstance;" + OBJECT + TOKEN + CACHE + ")"
+        + OBJECT);
+    return null;
+  }
+
+  @Override
+  public Void visitSuperExpr(Expr.Super expr) {
+    throw new Unsupported("super");
+  }
+
+  @Override
+  public Void visitThisExpr(Expr.This expr) {
+    load(expr.keyword, expr.depth, expr.slot);
+    return null;
+  }
+
+  @Override
+  public Void visitUnaryExpr(Expr.Unary expr) {
+    if (expr.operator.type == TokenType.BANG) {
+      condition(expr);
+      boxBoolean();
+      return null;
+    }
+    evaluate(expr.right);
+    constant(expr.operator, "lox/Token");
+    code.invokestatic(JIT_CODE, "negate", "(" + OBJECT + TOKEN + ")" + OBJECT);
+    return null;
+  }
+
+  @Override
+  public Void visitVariableExpr(Expr.Variable expr) {
+    load(expr.name, expr.depth, expr.slot);
+    return null;
+  }
+
+  @Override
+  public Void visitBlockStmt(Stmt.Block stmt) {
+    // 평평한 블록의 변수는 함수 프레임의 JVM 지역 변수를 쓰며 함수 시작에서 이미 비웠다
+    if (stmt.flat) {
+      for (Stmt statement : stmt.statements) {
+        statement.accept(this);
+      }
+      return null;
+    }
+    int base = beginScope(stmt.localCount);
+    clearLocals(base, base + stmt.localCount);
+    for (Stmt statement : stmt.statements) {
+      statement.accept(this);
+    }
+    endScope();
+    return null;
+  }
+
+  @Override
+  public Void visitClassStmt(Stmt.Class stmt) {
+    throw new Unsupported("class declaration");
+  }
+
+  @Override
+  public Void visitExpressionStmt(Stmt.Expression stmt) {
+    evaluate(stmt.expression);
+    code.op(POP, -1);
+    return null;
+  }
+
+  @Override
+  public Void visitPrintStmt(Stmt.Print stmt) {
+    evaluate(stmt.expression);
+    code.aload(INTERPRETER);
+    code.invokestatic(JIT_CODE, "print", "(" + OBJECT + INTERPRETER_TYPE + ")V");
+    return null;
+  }
+
+  @Override
+  public Void visitReturnStmt(Stmt.Return stmt) {
+    if (stmt.value != null && !isInitializer) {
+      evaluate(stmt.value);
+      code.op(ARETURN, -1);
+      return null;
+    }
+    emitReturn();
+    return null;
+  }
+
+  @Override
+  public Void visitFunctionStmt(Stmt.Function stmt) {
+    throw new Unsupported("function declaration");
+  }
+
+  @Override
+  public Void visitIfStmt(Stmt.If stmt) {
+    Label elseBranch = new Label();
+    Label end = new Label();
+    condition(stmt.condition);
+    code.jump(IFEQ, elseBranch);
+    stmt.thenBranch.accept(this);
+    code.jump(GOTO, end);
+    code.mark(elseBranch);
+    if (stmt.elseBranch != null) {
+      stmt.elseBranch.accept(this);
+    }
+    code.mark(end);
+    return null;
+  }
+
+  @Override
+  public Void visitVarStmt(Stmt.Var stmt) {
+    if (stmt.slot == -1) {
+      throw new Unsupported("global declaration");
+    }
+    if (stmt.initializer != null) {
+      evaluate(stmt.initializer);
+    } else {
+      code.op(ACONST_NULL, 1);
+    }
+    code.astore(scopes.get(scopes.size() - 1) + stmt.slot);
+    return null;
+  }
+
+  @Override
+  public Void visitWhileStmt(Stmt.While stmt) {
+    Label loop = new Label();
+    Label exit = new Label();
+    code.mark(loop);
+    condition(stmt.condition);
+    code.jump(IFEQ, exit);
+    stmt.body.accept(this);
+    code.aload(INTERPRETER);
+    code.invokevirtual("lox/Interpreter", "poll", "()V");
+    code.jump(GOTO, loop);
+    code.mark(exit);
+    return null;
+  }
+}
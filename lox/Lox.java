@@ -1,46 +1,79 @@
 package lox;
 
-import static lox.TokenType.EOF;
-
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
-import java.nio.charset.Charset;
-import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 public class Lox {
 
-  private static final Interpreter interpreter = new Interpreter();
-  static boolean hadError = false;
-  static boolean hadRuntimeError = false;
-
   public static void main(String[] args) throws IOException {
-    if (args.length > 1) {
-      System.out.println("Usage: jlox [script]");
+    List<String> params = new ArrayList<>(Arrays.asList(args));
+    boolean useVm = params.remove("--vm");
+    boolean jit = !params.remove("--no-jit");
+    boolean useCache = !params.remove("--no-cache");
+    boolean emitJava = params.remove("--emit-java");
+    String serve = option(params, "--serve");
+    String threads = option(params, "--threads");
+    String timeout = option(params, "--timeout");
+    LoxEngine engine = new LoxEngine(useVm, jit, useCache);
+
+    // 남은 -- 인자는 모르는 옵션이거나 값이 빠진 옵션이다
+    boolean unknown = params.stream().anyMatch(param -> param.startsWith("--"));
+    if (unknown || params.size() > 1 || (emitJava && params.isEmpty())
+        || (serve != null && !params.isEmpty())
+        || (serve == null && (threads != null || timeout != null))) {
+      System.out.println("Usage: jlox [--vm] [--no-jit] [--no-cache] [script]");
+      System.out.println("       jlox --emit-java script");
+      System.out.println("       jlox [--vm] [--no-jit] --serve port|socket-path|- "
+          + "[--threads n] [--timeout millis]");
       System.exit(64);
-    } else if (args.length == 1) {
-      runFile(args[0]);
+    } else if (serve != null) {
+      int workers = threads != null ? Integer.parseInt(threads)
+          : Runtime.getRuntime().availableProcessors();
+      long limit = timeout != null ? Long.parseLong(timeout) : 10_000;
+      new LoxServer(engine, workers, limit).listen(serve);
+    } else if (emitJava) {
+      translateFile(engine.newIsolate(), params.get(0));
+    } else if (params.size() == 1) {
+      runFile(engine.newIsolate(), params.get(0));
     } else {
-      runPrompt();
+      runPrompt(engine.newIsolate());
     }
   }
 
-  private static void runFile(String path) throws IOException {
-    byte[] bytes = Files.readAllBytes(Paths.get(path));
-    run(new String(bytes, Charset.defaultCharset()));
+  // 값을 받는 옵션을 목록에서 빼고 그 값을 돌려준다
+  private static String option(List<String> params, String name) {
+    int index = params.indexOf(name);
+    if (index == -1 || index + 1 == params.size()) {
+      return null;
+    }
+    params.remove(index);
+    return params.remove(index);
+  }
 
-    if (hadError) {
-      System.exit(65);
+  private static void runFile(Isolate isolate, String path) throws IOException {
+    Isolate.Status status = isolate.runFile(Paths.get(path));
+    if (status != Isolate.Status.OK) {
+      System.exit(status.exitCode);
     }
+  }
 
-    if (hadRuntimeError) {
-      System.exit(70);
+  // 번역한 자바 소스를 표준 출력으로 내보낸다
+  private static void translateFile(Isolate isolate, String path) throws IOException {
+    PreparedScript script = isolate.analyze(Isolate.map(Paths.get(path)));
+    if (script == null) {
+      System.exit(65);
     }
+
+    JavaTranslator translator = new JavaTranslator(JavaTranslator.classNameFor(path));
+    System.out.print(translator.translate(script.statements));
   }
 
-  private static void runPrompt() throws IOException {
+  private static void runPrompt(Isolate isolate) throws IOException {
     InputStreamReader input = new InputStreamReader(System.in);
     BufferedReader reader = new BufferedReader(input);
 
@@ -50,52 +83,7 @@ public class Lox {
       if (line == null) {
         break;
       }
-      run(line);
-      hadError = false;
+      isolate.run(line, false);
     }
   }
-
-  private static void run(String source) {
-    Scanner scanner = new Scanner(source);
-    List<Token> tokens = scanner.scanTokens();
-
-    Parser parser = new Parser(tokens);
-    List<Stmt> statements = parser.parse();
-
-		if (hadError) {
-			return;
-		}
-    Resolver resolver = new Resolver(interpreter);
-    resolver.resolve(statements);
-
-		if (hadError) {
-			return;
-		}
-
-    interpreter.interpret(statements);
-
-    //    System.out.println(new AstPrinter().print(expression));
-  }
-
-  public static void error(int line, String message) {
-    report(line, "", message);
-  }
-
-  private static void report(int line, String where, String message) {
-    System.err.println("[line " + line + "] Error" + where + ": " + message);
-    hadError = true;
-  }
-
-  static void error(Token Token, String message) {
-    if (Token.type == EOF) {
-      report(Token.line, " at end ", message);
-    } else {
-      report(Token.line, " at '" + Token.lexeme + "'", message);
-    }
-  }
-
-  public static void runtimeError(RuntimeError error) {
-    System.err.println(error.getMessage() + "\n[line " + error.token.line + "]");
-    hadRuntimeError = true;
-  }
 }
@@ -1,5 +1,6 @@
 package lox;
 
+import java.util.Arrays;
 import java.util.List;
 
 interface LoxCallable {
@@ -7,4 +8,30 @@ interface LoxCallable {
   Object call(Interpreter interpreter, List<Object> arguments);
 
   int arity();
+
+  // 인자 수가 정해진 호출은 리스트를 만들지 않는다. 기본 구현은 배열 경로로 넘기므로
+  // 자주 불리는 구현만 재정의하면 된다
+  default Object call0(Interpreter interpreter) {
+    return callArray(interpreter, new Object[0]);
+  }
+
+  default Object call1(Interpreter interpreter, Object a) {
+    return callArray(interpreter, new Object[] {a});
+  }
+
+  default Object call2(Interpreter interpreter, Object a, Object b) {
+    return callArray(interpreter, new Object[] {a, b});
+  }
+
+  default Object call3(Interpreter interpreter, Object a, Object b, Object c) {
+    return callArray(interpreter, new Object[] {a, b, c});
+  }
+
+  default Object call4(Interpreter interpreter, Object a, Object b, Object c, Object d) {
+    return callArray(interpreter, new Object[] {a, b, c, d});
+  }
+
+  default Object callArray(Interpreter interpreter, Object[] arguments) {
+    return call(interpreter, Arrays.asList(arguments));
+  }
 }
@@ -0,0 +1,99 @@
+package lox;
+
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+// 작업끼리 값을 넘기는 크기가 정해진 큐. 가득 차면 send 가, 비어 있으면 receive 가 기다린다.
+// 기다리는 동안 가상 스레드가 운반 스레드를 붙잡지 않도록 synchronized 대신 ReentrantLock 을 쓴다
+final class LoxChannel {
+
+  private final Object[] buffer;
+  private int head = 0;
+  private int count = 0;
+  private boolean closed = false;
+  private final ReentrantLock lock = new ReentrantLock();
+  private final Condition notFull = lock.newCondition();
+  private final Condition notEmpty = lock.newCondition();
+
+  private LoxChannel(int capacity) {
+    this.buffer = new Object[capacity];
+  }
+
+  static LoxChannel create(Object capacity) {
+    if (!(capacity instanceof Double size) || size < 1 || size > Integer.MAX_VALUE
+        || size != Math.floor(size)) {
+      throw new NativeError("Channel capacity must be a positive integer.");
+    }
+    return new LoxChannel(size.intValue());
+  }
+
+  static LoxChannel of(Object value) {
+    if (value instanceof LoxChannel channel) {
+      return channel;
+    }
+    throw new NativeError("Operand must be a channel.");
+  }
+
+  void send(Object value) {
+    try {
+      lock.lockInterruptibly();
+      try {
+        while (count == buffer.length && !closed) {
+          notFull.await();
+        }
+        if (closed) {
+          throw new NativeError("Send on a closed channel.");
+        }
+        buffer[(head + count) % buffer.length] = value;
+        count++;
+        notEmpty.signal();
+      } finally {
+        lock.unlock();
+      }
+    } catch (InterruptedException e) {
+      throw new ScriptCancelled();
+    }
+  }
+
+  // 닫힌 채널을 다 비우면 nil 을 돌려준다. 그래서 nil 은 보내도 끝과 구별되지 않는다
+  Object receive() {
+    try {
+      lock.lockInterruptibly();
+      try {
+        while (count == 0 && !closed) {
+          notEmpty.await();
+        }
+        if (count == 0) {
+          return null;
+        }
+        Object value = buffer[head];
+        buffer[head] = null;
+        head = (head + 1) % buffer.length;
+        count--;
+        notFull.signal();
+        return value;
+      } finally {
+        lock.unlock();
+      }
+    } catch (InterruptedException e) {
+      throw new ScriptCancelled();
+    }
+  }
+
+  // 이미 닫힌 채널을 다시 닫아도 된다. 기다리던 send 는 오류가 나고 receive 는 남은 값을 읽는다
+  void close() {
+    lock.lock();
+    try {
+      closed = true;
+      notFull.signalAll();
+      notEmpty.signalAll();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public String toString() {
+    return "<channel>";
+  }
+}
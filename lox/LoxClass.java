@@ -1,18 +1,29 @@
 package lox;
 
 import java.util.List;
-import java.util.Map;
 
 public class LoxClass implements LoxCallable {
 
   final String name;
-  private final Map<String, LoxFunction> methods;
+  // 상위 클래스의 메서드까지 펼쳐 담은 표. 클래스를 만들 때 한 번 채우고 바꾸지 않는다
+  private final SymbolMap<LoxFunction> methods = new SymbolMap<>();
+  private final LoxFunction initializer;
   final LoxClass superClass;
+  final Shape rootShape = new Shape();
+  int fieldCountHint = 0;
+  // 클래스를 만든 실행의 전역. 작업을 만들었는지 보고 인스턴스가 잠금을 쓸지 정한다
+  final Globals globals;
 
-  public LoxClass(String name, LoxClass superClass, Map<String, LoxFunction> methods) {
+  public LoxClass(String name, LoxClass superClass, SymbolMap<LoxFunction> methods,
+      Globals globals) {
     this.name = name;
     this.superClass = superClass;
-    this.methods = methods;
+    this.globals = globals;
+    if (superClass != null) {
+      this.methods.putAll(superClass.methods);
+    }
+    this.methods.putAll(methods);
+    this.initializer = this.methods.get(Symbol.INIT);
   }
 
   @Override
@@ -22,34 +33,73 @@ public class LoxClass implements LoxCallable {
 
   @Override
   public Object call(Interpreter interpreter, List<Object> arguments) {
+    return callArray(interpreter, arguments.toArray());
+  }
+
+  @Override
+  public Object call0(Interpreter interpreter) {
     LoxInstance instance = new LoxInstance(this);
-    LoxFunction initializer = findMethod("init");
     if (initializer != null) {
-      initializer.bind(instance).call(interpreter, arguments);
+      initializer.invoke0(interpreter, instance);
     }
+    return instance;
+  }
 
+  @Override
+  public Object call1(Interpreter interpreter, Object a) {
+    LoxInstance instance = new LoxInstance(this);
+    if (initializer != null) {
+      initializer.invoke1(interpreter, instance, a);
+    }
     return instance;
   }
 
   @Override
-  public int arity() {
-    LoxFunction initializer = findMethod("init");
+  public Object call2(Interpreter interpreter, Object a, Object b) {
+    LoxInstance instance = new LoxInstance(this);
     if (initializer != null) {
-      return initializer.arity();
+      initializer.invoke2(interpreter, instance, a, b);
     }
+    return instance;
+  }
 
-    return 0;
+  @Override
+  public Object call3(Interpreter interpreter, Object a, Object b, Object c) {
+    LoxInstance instance = new LoxInstance(this);
+    if (initializer != null) {
+      initializer.invoke3(interpreter, instance, a, b, c);
+    }
+    return instance;
   }
 
-  LoxFunction findMethod(String name) {
-    if (methods.containsKey(name)) {
-      return methods.get(name);
+  @Override
+  public Object call4(Interpreter interpreter, Object a, Object b, Object c, Object d) {
+    LoxInstance instance = new LoxInstance(this);
+    if (initializer != null) {
+      initializer.invoke4(interpreter, instance, a, b, c, d);
     }
+    return instance;
+  }
 
-    if (superClass != null) {
-      return superClass.findMethod(name);
+  @Override
+  public Object callArray(Interpreter interpreter, Object[] arguments) {
+    LoxInstance instance = new LoxInstance(this);
+    if (initializer != null) {
+      initializer.invokeArray(interpreter, instance, arguments);
     }
+    return instance;
+  }
+
+  @Override
+  public int arity() {
+    if (initializer != null) {
+      return initializer.arity();
+    }
+
+    return 0;
+  }
 
-    return null;
+  LoxFunction findMethod(Symbol name) {
+    return methods.get(name);
   }
 }
@@ -0,0 +1,69 @@
+package lox;
+
+import java.io.PrintStream;
+import java.util.List;
+
+// 한 JVM 에서 여러 스크립트를 동시에 돌리기 위한 진입점. 엔진은 실행 방식만 정하고
+// 전역, 출력, 오류 상태는 모두 isolate 가 따로 가지므로 isolate 끼리는 서로 간섭하지 않는다
+public final class LoxEngine {
+
+  final boolean useVm;
+  final boolean jit;
+  final boolean useCache;
+
+  public LoxEngine() {
+    this(false, true, true);
+  }
+
+  public LoxEngine(boolean useVm, boolean jit, boolean useCache) {
+    this.useVm = useVm;
+    this.jit = jit;
+    this.useCache = useCache;
+  }
+
+  public Isolate newIsolate() {
+    return newIsolate(System.out, System.err);
+  }
+
+  public Isolate newIsolate(PrintStream out, PrintStream err) {
+    return new Isolate(this, out, err);
+  }
+
+  public PreparedScript prepare(String source) {
+    return prepare(source, System.err);
+  }
+
+  // 오류가 있으면 err 에 알리고 null 을 돌려준다. 결과는 어느 isolate 에서든 몇 번이고 실행할 수 있다
+  public PreparedScript prepare(String source, PrintStream err) {
+    Diagnostics diagnostics = new Diagnostics(err);
+    return prepare(new Scanner(source, diagnostics), diagnostics, true, 0);
+  }
+
+  // wholeProgram 이 거짓이면 뒤에 올 입력이 전역을 바꿀 수 있으므로 함수를 인라인하지 않는다.
+  // 같은 인터프리터에서 이어 실행할 코드는 firstCacheSite 로 앞 코드의 캐시 번호를 피한다
+  PreparedScript prepare(Scanner scanner, Diagnostics diagnostics, boolean wholeProgram,
+      int firstCacheSite) {
+    // 스캐너는 파서가 토큰을 당길 때마다 조금씩 진행한다
+    Parser parser = new Parser(scanner, diagnostics);
+    List<Stmt> statements = parser.parse();
+    if (diagnostics.hadError()) {
+      return null;
+    }
+
+    Resolver resolver = new Resolver(diagnostics, firstCacheSite);
+    resolver.resolve(statements);
+    if (diagnostics.hadError()) {
+      return null;
+    }
+    statements = new Optimizer(wholeProgram).optimize(statements);
+
+    Obj.Function function = null;
+    if (useVm) {
+      function = new Compiler(diagnostics).compile(statements);
+      if (diagnostics.hadError()) {
+        return null;
+      }
+    }
+    return new PreparedScript(statements, resolver.cacheSites(), function);
+  }
+}
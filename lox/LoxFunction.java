@@ -6,28 +6,148 @@ class LoxFunction implements LoxCallable {
 	private final Stmt.Function declaration;
 	private final Environment closure;
 	private final boolean isIniitializer;
+	private final boolean isMethod;
+	private final LoxInstance receiver;
 
 	public LoxFunction(Stmt.Function declaration, Environment closure, boolean isIniitializer) {
+		this(declaration, closure, isIniitializer, false, null);
+	}
+
+	LoxFunction(Stmt.Function declaration, Environment closure, boolean isIniitializer,
+		boolean isMethod, LoxInstance receiver) {
 		this.declaration = declaration;
 		this.closure = closure;
 		this.isIniitializer = isIniitializer;
+		this.isMethod = isMethod;
+		this.receiver = receiver;
 	}
 
 	@Override
 	public Object call(Interpreter interpreter, List<Object> arguments) {
-		Environment environment = new Environment(closure);
-		for (int i = 0; i < declaration.params.size(); i++) {
-			environment.define(declaration.params.get(i).lexeme, arguments.get(i));
-		}
-		try {
-			interpreter.executeBlock(declaration.body, environment);
-		} catch (Return returnValue) {
-			if(isIniitializer) return closure.getAt(0, "this");
-			return returnValue.value;
+		return invokeArray(interpreter, receiver, arguments.toArray());
+	}
+
+	@Override
+	public Object call0(Interpreter interpreter) {
+		return invoke0(interpreter, receiver);
+	}
+
+	@Override
+	public Object call1(Interpreter interpreter, Object a) {
+		return invoke1(interpreter, receiver, a);
+	}
+
+	@Override
+	public Object call2(Interpreter interpreter, Object a, Object b) {
+		return invoke2(interpreter, receiver, a, b);
+	}
+
+	@Override
+	public Object call3(Interpreter interpreter, Object a, Object b, Object c) {
+		return invoke3(interpreter, receiver, a, b, c);
+	}
+
+	@Override
+	public Object call4(Interpreter interpreter, Object a, Object b, Object c, Object d) {
+		return invoke4(interpreter, receiver, a, b, c, d);
+	}
+
+	@Override
+	public Object callArray(Interpreter interpreter, Object[] arguments) {
+		return invokeArray(interpreter, receiver, arguments);
+	}
+
+	// 메서드는 this 를 0번 슬롯에 두므로 바인딩 없이 수신 객체만 넘겨 호출할 수 있다.
+	// 인자 수별 진입점은 인자를 새 환경의 슬롯이나 컴파일된 코드의 같은 인자 수 진입점에 바로 넘긴다
+	Object invoke0(Interpreter interpreter, LoxInstance receiver) {
+		interpreter.poll();
+		JitCode compiled = declaration.compiled;
+		if (compiled != null)
+			return compiled.invoke0(interpreter, closure, receiver);
+		return execute(interpreter, frame(receiver), receiver);
+	}
+
+	Object invoke1(Interpreter interpreter, LoxInstance receiver, Object a) {
+		interpreter.poll();
+		JitCode compiled = declaration.compiled;
+		if (compiled != null)
+			return compiled.invoke1(interpreter, closure, receiver, a);
+		Environment environment = frame(receiver);
+		int offset = isMethod ? 1 : 0;
+		environment.define(offset, a);
+		return execute(interpreter, environment, receiver);
+	}
+
+	Object invoke2(Interpreter interpreter, LoxInstance receiver, Object a, Object b) {
+		interpreter.poll();
+		JitCode compiled = declaration.compiled;
+		if (compiled != null)
+			return compiled.invoke2(interpreter, closure, receiver, a, b);
+		Environment environment = frame(receiver);
+		int offset = isMethod ? 1 : 0;
+		environment.define(offset, a);
+		environment.define(offset + 1, b);
+		return execute(interpreter, environment, receiver);
+	}
+
+	Object invoke3(Interpreter interpreter, LoxInstance receiver, Object a, Object b, Object c) {
+		interpreter.poll();
+		JitCode compiled = declaration.compiled;
+		if (compiled != null)
+			return compiled.invoke3(interpreter, closure, receiver, a, b, c);
+		Environment environment = frame(receiver);
+		int offset = isMethod ? 1 : 0;
+		environment.define(offset, a);
+		environment.define(offset + 1, b);
+		environment.define(offset + 2, c);
+		return execute(interpreter, environment, receiver);
+	}
+
+	Object invoke4(Interpreter interpreter, LoxInstance receiver, Object a, Object b, Object c,
+		Object d) {
+		interpreter.poll();
+		JitCode compiled = declaration.compiled;
+		if (compiled != null)
+			return compiled.invoke4(interpreter, closure, receiver, a, b, c, d);
+		Environment environment = frame(receiver);
+		int offset = isMethod ? 1 : 0;
+		environment.define(offset, a);
+		environment.define(offset + 1, b);
+		environment.define(offset + 2, c);
+		environment.define(offset + 3, d);
+		return execute(interpreter, environment, receiver);
+	}
+
+	Object invokeArray(Interpreter interpreter, LoxInstance receiver, Object[] arguments) {
+		interpreter.poll();
+		JitCode compiled = declaration.compiled;
+		if (compiled != null)
+			return compiled.invoke(interpreter, closure, receiver, arguments);
+		Environment environment = frame(receiver);
+		int offset = isMethod ? 1 : 0;
+		for (int i = 0; i < arguments.length; i++) {
+			environment.define(i + offset, arguments[i]);
 		}
+		return execute(interpreter, environment, receiver);
+	}
+
+	private Environment frame(LoxInstance receiver) {
+		Environment environment = new Environment(closure, declaration.localCount);
+		if (isMethod)
+			environment.define(0, receiver);
+		return environment;
+	}
+
+	private Object execute(Interpreter interpreter, Environment environment, LoxInstance receiver) {
+		int backEdges = interpreter.backEdges;
+		Completion completion = interpreter.executeBlock(declaration.body, environment);
+		if (interpreter.jit)
+			Jit.profile(declaration, isMethod, isIniitializer, interpreter.backEdges - backEdges);
 
 		if (isIniitializer)
-			return closure.getAt(0, "this");
+			return receiver;
+		if (completion == Completion.RETURN)
+			return interpreter.takeReturnValue();
 		return null;
 	}
 
@@ -38,12 +158,10 @@ class LoxFunction implements LoxCallable {
 
 	@Override
 	public String toString() {
-		return "<fn " + declaration.name.lexeme + ">";
+		return "<fn " + declaration.name.lexeme() + ">";
 	}
 
 	LoxFunction bind(LoxInstance instance) {
-		Environment environment = new Environment(closure);
-		environment.define("this", instance);
-		return new LoxFunction(declaration, environment, isIniitializer);
+		return new LoxFunction(declaration, closure, isIniitializer, true, instance);
 	}
 }
@@ -1,14 +1,19 @@
 package lox;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.Arrays;
 
+// spawn 한 작업끼리 같은 인스턴스를 쓸 수 있다. 클래스를 만든 실행에서 작업이 생긴 뒤로는 필드를
+// 더할 때 인스턴스를 잠근다. 읽는 쪽은 새 모양과 늘리기 전 배열을 함께 볼 수 있으므로 번호가 배열
+// 밖이면 잠그고 다시 읽는다
 public class LoxInstance {
 	private LoxClass klass;
-	private final Map<String, Object> fields = new HashMap<>();
+	private Shape shape;
+	private Object[] fields;
 
 	public LoxInstance(LoxClass klass) {
 		this.klass = klass;
+		this.shape = klass.rootShape;
+		this.fields = new Object[klass.fieldCountHint];
 	}
 
 	@Override
@@ -17,17 +22,129 @@ public class LoxInstance {
 	}
 
 	Object get(Token name) {
-		if (fields.containsKey(name.lexeme))
-			return fields.get(name.lexeme);
+		int index = shape.indexOf(name.symbol());
+		if (index != -1)
+			return field(index);
 
-		LoxFunction method = klass.findMethod(name.lexeme);
+		LoxFunction method = klass.findMethod(name.symbol());
 		if (method != null)
 			return method.bind(this);
 
-		throw new RuntimeError(name, "Undefined property '" + name.lexeme + "'.");
+		throw new RuntimeError(name, "Undefined property '" + name.lexeme() + "'.");
+	}
+
+	Object get(Token name, InlineCache cache) {
+		InlineCache.Entry entry = cache.lookup(shape);
+		if (entry != null) {
+			if (entry.method != null)
+				return entry.method.bind(this);
+			return field(entry.index);
+		}
+
+		Shape shape = this.shape;
+		int index = shape.indexOf(name.symbol());
+		if (index != -1) {
+			cache.add(new InlineCache.Entry(shape, shape, index, null));
+			return field(index);
+		}
+
+		LoxFunction method = klass.findMethod(name.symbol());
+		if (method != null) {
+			cache.add(new InlineCache.Entry(shape, shape, -1, method));
+			return method.bind(this);
+		}
+
+		throw new RuntimeError(name, "Undefined property '" + name.lexeme() + "'.");
+	}
+
+	LoxFunction method(Token name, InlineCache cache) {
+		InlineCache.Entry entry = cache.lookup(shape);
+		if (entry != null)
+			return entry.method;
+
+		int index = shape.indexOf(name.symbol());
+		if (index != -1) {
+			cache.add(new InlineCache.Entry(shape, shape, index, null));
+			return null;
+		}
+
+		LoxFunction method = klass.findMethod(name.symbol());
+		if (method != null)
+			cache.add(new InlineCache.Entry(shape, shape, -1, method));
+		return method;
+	}
+
+	private Object field(int index) {
+		Object[] fields = this.fields;
+		if (index < fields.length)
+			return fields[index];
+		synchronized (this) {
+			return this.fields[index];
+		}
 	}
 
 	void set(Token name, Object value) {
-		fields.put(name.lexeme, value);
+		if (klass.globals.shared()) {
+			synchronized (this) {
+				store(name.symbol(), value);
+			}
+			return;
+		}
+		store(name.symbol(), value);
+	}
+
+	void set(Token name, Object value, InlineCache cache) {
+		InlineCache.Entry entry = cache.lookup(shape);
+		if (entry != null && entry.next == entry.shape) {
+			Object[] fields = this.fields;
+			if (entry.index < fields.length) {
+				fields[entry.index] = value;
+				return;
+			}
+		}
+
+		if (klass.globals.shared()) {
+			synchronized (this) {
+				update(name, value, cache);
+			}
+			return;
+		}
+		update(name, value, cache);
+	}
+
+	private void update(Token name, Object value, InlineCache cache) {
+		InlineCache.Entry entry = cache.lookup(shape);
+		if (entry != null) {
+			if (entry.next != shape)
+				transition(entry.next, entry.index, value);
+			else
+				fields[entry.index] = value;
+			return;
+		}
+
+		Shape before = shape;
+		int index = store(name.symbol(), value);
+		cache.add(new InlineCache.Entry(before, shape, index, null));
+	}
+
+	private int store(Symbol name, Object value) {
+		int index = shape.indexOf(name);
+		if (index == -1) {
+			index = shape.size();
+			transition(shape.withField(name), index, value);
+		} else {
+			fields[index] = value;
+		}
+		return index;
+	}
+
+	// 배열을 늘리고 값을 넣은 뒤에 모양을 바꾼다
+	private void transition(Shape next, int index, Object value) {
+		if (next.size() > fields.length) {
+			fields = Arrays.copyOf(fields, Math.max(4, fields.length * 2));
+		}
+		fields[index] = value;
+		shape = next;
+		klass.fieldCountHint = Math.max(klass.fieldCountHint, next.size());
 	}
 }
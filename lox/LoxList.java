@@ -0,0 +1,178 @@
+package lox;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+
+// 내장 리스트. 숫자만 담는 동안은 값을 double[] 에 박싱 없이 두고, 숫자가 아닌 값이 처음
+// 들어올 때 Object[] 로 한 번 옮긴다. 숫자 백만 개는 Double 객체 백만 개 대신 8MB 배열 하나다
+final class LoxList {
+
+  private static final double[] NO_NUMBERS = new double[0];
+
+  // objects 가 null 이면 값은 numbers 에 있다. 한 번 옮기면 숫자만 남아도 되돌리지 않는다
+  private double[] numbers = NO_NUMBERS;
+  private Object[] objects = null;
+  private int size = 0;
+
+  int size() {
+    return size;
+  }
+
+  boolean holdsNumbers() {
+    return objects == null;
+  }
+
+  // holdsNumbers 일 때만 부른다
+  double number(int index) {
+    return numbers[index];
+  }
+
+  Object get(int index) {
+    return objects == null ? (Object) numbers[index] : objects[index];
+  }
+
+  void set(int index, Object value) {
+    if (objects == null) {
+      if (value instanceof Double number) {
+        numbers[index] = number;
+        return;
+      }
+      generalize();
+    }
+    objects[index] = value;
+  }
+
+  void set(int index, double value) {
+    if (objects == null) {
+      numbers[index] = value;
+    } else {
+      objects[index] = value;
+    }
+  }
+
+  void add(Object value) {
+    if (objects == null) {
+      if (value instanceof Double number) {
+        if (size == numbers.length) {
+          numbers = Arrays.copyOf(numbers, capacity());
+        }
+        numbers[size++] = number;
+        return;
+      }
+      generalize();
+    }
+    if (size == objects.length) {
+      objects = Arrays.copyOf(objects, capacity());
+    }
+    objects[size++] = value;
+  }
+
+  // 빈 리스트면 null 이다
+  Object removeLast() {
+    if (size == 0) {
+      return null;
+    }
+    size--;
+    if (objects == null) {
+      return numbers[size];
+    }
+    Object value = objects[size];
+    objects[size] = null;
+    return value;
+  }
+
+  private int capacity() {
+    return Math.max(8, size + (size >> 1));
+  }
+
+  private void generalize() {
+    objects = new Object[Math.max(numbers.length, 8)];
+    for (int i = 0; i < size; i++) {
+      objects[i] = numbers[i];
+    }
+    numbers = NO_NUMBERS;
+  }
+
+  // 정수이고 범위 안이면 그대로, 아니면 -1 을 돌려준다
+  int index(double value) {
+    int index = (int) value;
+    return index == value && index >= 0 && index < size ? index : -1;
+  }
+
+  String indexError(Object value) {
+    if (!(value instanceof Double number)) {
+      return "List index must be a number.";
+    }
+    if (number != Math.floor(number)) {
+      return "List index must be an integer.";
+    }
+    return "List index " + Interpreter.stringify(value) + " is out of range for size " + size
+        + ".";
+  }
+
+  // 트리 순회 인터프리터와 JIT, AOT 코드가 쓰는 색인 연산
+  static Object getIndex(Object object, Object index, Token bracket) {
+    LoxList list = list(object, bracket);
+    return list.get(list.index(index, bracket));
+  }
+
+  static Object setIndex(Object object, Object index, Object value, Token bracket) {
+    LoxList list = list(object, bracket);
+    list.set(list.index(index, bracket), value);
+    return value;
+  }
+
+  private static LoxList list(Object object, Token bracket) {
+    if (object instanceof LoxList list) {
+      return list;
+    }
+    throw new RuntimeError(bracket, "Can only index lists.");
+  }
+
+  private int index(Object value, Token bracket) {
+    int index = value instanceof Double number ? index((double) number) : -1;
+    if (index == -1) {
+      throw new RuntimeError(bracket, indexError(value));
+    }
+    return index;
+  }
+
+  // 자바로 구현한 전역 함수가 인자를 확인할 때 쓴다
+  static LoxList of(Object value) {
+    if (value instanceof LoxList list) {
+      return list;
+    }
+    throw new NativeError("Operand must be a list.");
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder text = new StringBuilder();
+    append(text, Collections.newSetFromMap(new IdentityHashMap<>()));
+    return text.toString();
+  }
+
+  // printing 은 지금 찍고 있는 바깥 리스트들이다. 그중 하나를 다시 만나면 순환이므로 [...] 로 줄인다
+  private void append(StringBuilder text, Set<LoxList> printing) {
+    if (!printing.add(this)) {
+      text.append("[...]");
+      return;
+    }
+    text.append('[');
+    for (int i = 0; i < size; i++) {
+      if (i > 0) {
+        text.append(", ");
+      }
+      Object value = get(i);
+      if (value instanceof LoxList list) {
+        list.append(text, printing);
+      } else {
+        text.append(Interpreter.stringify(value));
+      }
+    }
+    text.append(']');
+    printing.remove(this);
+  }
+}
@@ -0,0 +1,47 @@
+package lox;
+
+import java.util.List;
+
+// 자바로 구현한 전역 함수. 인자는 호출한 쪽에서 개수만 검사하므로 타입은 본문이 확인한다
+final class LoxNative implements LoxCallable {
+
+  interface Body {
+
+    Object call(Interpreter interpreter, Object[] arguments);
+  }
+
+  private static final Object[] NO_ARGUMENTS = new Object[0];
+
+  private final int arity;
+  private final Body body;
+
+  LoxNative(int arity, Body body) {
+    this.arity = arity;
+    this.body = body;
+  }
+
+  @Override
+  public Object call(Interpreter interpreter, List<Object> arguments) {
+    return body.call(interpreter, arguments.toArray());
+  }
+
+  @Override
+  public Object call0(Interpreter interpreter) {
+    return body.call(interpreter, NO_ARGUMENTS);
+  }
+
+  @Override
+  public Object callArray(Interpreter interpreter, Object[] arguments) {
+    return body.call(interpreter, arguments);
+  }
+
+  @Override
+  public int arity() {
+    return arity;
+  }
+
+  @Override
+  public String toString() {
+    return "<native fn>";
+  }
+}
@@ -0,0 +1,339 @@
+package lox;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.ConnectException;
+import java.net.InetSocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.StandardSocketOptions;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+// --serve 로 띄우는 스크립트 실행 서버. 요청은 미리 데운 isolate 풀에서 돌고 같은 스크립트는 한 번만
+// 준비한다. 프로세스가 오래 살아 있으므로 HotSpot 이 컴파일한 인터프리터를 요청마다 버리지 않는다.
+//
+// 한 연결에서 오가는 틀. 정수는 빅엔디언 4바이트, 문자열은 바이트 수 뒤에 UTF-8 바이트다.
+//   요청 묶음: int count, 그 뒤로 count 번 { int timeoutMillis, string script, string input }
+//   응답 묶음: 요청 순서대로 count 번 { int status, string output, string errors }
+// 묶음 안의 요청은 풀에서 함께 돈다. count 가 0 이면 연결을 닫고, 음수이거나 MAX_BATCH 보다 크거나
+// 묶음의 문자열이 모두 MAX_BATCH_BYTES 를 넘으면 연결을 끊는다. timeoutMillis 가 0 이면 서버
+// 기본값을 쓴다. status 는 Isolate.Status 의 종료 코드이고, 스크립트는 전역 input 으로 입력을 읽는다.
+// 연결은 MAX_CONNECTIONS 개까지 함께 받으므로 요청을 담아 두는 메모리는 그 곱을 넘지 않는다
+final class LoxServer {
+
+  private static final int MAX_STRING = 16 << 20;
+  private static final int MAX_BATCH = 1024;
+  // 응답을 쓰기 전에 묶음의 요청을 모두 들고 있으므로 요청 수와 함께 바이트 합도 제한한다
+  private static final int MAX_BATCH_BYTES = 16 << 20;
+  private static final int MAX_CONNECTIONS = 32;
+  private static final int PREPARED_LIMIT = 256;
+  private static final int WARMUP_RUNS = 200;
+  // 인터프리터의 주요 경로를 두루 지나도록 만든 데우기용 스크립트
+  private static final String WARMUP = """
+      class Point {
+        init(x, y) { this.x = x; this.y = y; }
+        plus(other) { return Point(this.x + other.x, this.y + other.y); }
+      }
+      fun counter() {
+        var n = 0;
+        fun next() { n = n + 1; return n; }
+        return next;
+      }
+      var p = Point(0, 0);
+      var next = counter();
+      var text = "";
+      for (var i = 0; i < 200; i = i + 1) {
+        p = p.plus(Point(i, 1));
+        if (next() < 20) text = text + input;
+      }
+      print p.x + p.y;
+      """;
+
+  private final LoxEngine engine;
+  private final long defaultTimeoutMillis;
+  private final ExecutorService pool;
+  private final ThreadLocal<Worker> workers;
+  // 최근에 쓴 스크립트부터 남긴다
+  private final Map<String, PreparedScript> prepared =
+      new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, PreparedScript> eldest) {
+          return size() > PREPARED_LIMIT;
+        }
+      };
+
+  // 풀의 스레드마다 isolate 하나와 출력을 모을 버퍼를 둔다
+  private static final class Worker {
+
+    final ByteArrayOutputStream output = new ByteArrayOutputStream();
+    final ByteArrayOutputStream errors = new ByteArrayOutputStream();
+    final PrintStream err = new PrintStream(errors, true, UTF_8);
+    final Isolate isolate;
+
+    Worker(LoxEngine engine) {
+      isolate = engine.newIsolate(new PrintStream(output, true, UTF_8), err);
+    }
+  }
+
+  private static final class Response {
+
+    final int status;
+    final String output;
+    final String errors;
+
+    Response(int status, String output, String errors) {
+      this.status = status;
+      this.output = output;
+      this.errors = errors;
+    }
+  }
+
+  LoxServer(LoxEngine engine, int threads, long defaultTimeoutMillis) {
+    this.engine = engine;
+    this.defaultTimeoutMillis = defaultTimeoutMillis;
+    this.pool = Executors.newFixedThreadPool(threads, runnable -> {
+      Thread thread = new Thread(runnable, "lox-worker");
+      thread.setDaemon(true);
+      return thread;
+    });
+    this.workers = ThreadLocal.withInitial(() -> new Worker(engine));
+    warmUp(threads);
+  }
+
+  // 모든 작업 스레드가 하나씩 맡도록 서로 기다리게 한 뒤 데우기 스크립트를 돌린다
+  private void warmUp(int threads) {
+    PreparedScript script = engine.prepare(WARMUP);
+    CountDownLatch started = new CountDownLatch(threads);
+    List<Future<?>> futures = new ArrayList<>();
+    for (int i = 0; i < threads; i++) {
+      futures.add(pool.submit(() -> {
+        started.countDown();
+        started.await();
+        Worker worker = workers.get();
+        for (int run = 0; run < WARMUP_RUNS; run++) {
+          worker.isolate.run(script, Map.of("input", "x"));
+          worker.output.reset();
+        }
+        return null;
+      }));
+    }
+    for (Future<?> future : futures) {
+      try {
+        future.get();
+      } catch (InterruptedException | ExecutionException e) {
+        throw new IllegalStateException("Warm-up failed.", e);
+      }
+    }
+  }
+
+  // address 가 숫자면 루프백 TCP 포트, - 이면 표준 입출력, 그 밖에는 유닉스 소켓 경로다
+  void listen(String address) throws IOException {
+    if (address.equals("-")) {
+      serve(System.in, System.out);
+      return;
+    }
+
+    boolean tcp = address.chars().allMatch(Character::isDigit);
+    Path socket = tcp ? null : Path.of(address);
+    if (socket != null) {
+      removeStaleSocket(socket);
+    }
+    try (ServerSocketChannel server = tcp ? ServerSocketChannel.open()
+        : ServerSocketChannel.open(StandardProtocolFamily.UNIX)) {
+      server.bind(tcp
+          ? new InetSocketAddress(InetAddress.getLoopbackAddress(), Integer.parseInt(address))
+          : UnixDomainSocketAddress.of(socket));
+      System.err.println("Listening on " + server.getLocalAddress());
+      if (socket == null) {
+        accept(server, true);
+        return;
+      }
+      // bind 한 뒤에만 지운다. 신호로 멈출 때는 deleteOnExit 가 지운다
+      socket.toFile().deleteOnExit();
+      try {
+        accept(server, false);
+      } finally {
+        Files.deleteIfExists(socket);
+      }
+    }
+  }
+
+  // 자리가 날 때까지 accept 하지 않으므로 넘치는 연결은 커널의 대기열에서 기다린다
+  private void accept(ServerSocketChannel server, boolean tcp) throws IOException {
+    ExecutorService connections = Executors.newFixedThreadPool(MAX_CONNECTIONS, runnable -> {
+      Thread thread = new Thread(runnable, "lox-connection");
+      thread.setDaemon(true);
+      return thread;
+    });
+    Semaphore slots = new Semaphore(MAX_CONNECTIONS);
+    for (; ; ) {
+      slots.acquireUninterruptibly();
+      SocketChannel channel;
+      try {
+        channel = server.accept();
+        if (tcp) {
+          channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+        }
+      } catch (IOException e) {
+        slots.release();
+        throw e;
+      }
+      connections.execute(() -> {
+        try (channel) {
+          serve(Channels.newInputStream(channel), Channels.newOutputStream(channel));
+        } catch (IOException e) {
+          // 연결이 끊겼다
+        } finally {
+          slots.release();
+        }
+      });
+    }
+  }
+
+  // 앞서 띄운 서버가 지우지 못하고 남긴 소켓 파일이면 지운다. 받는 서버가 있거나 소켓이 아닌 파일은
+  // 그대로 두어 bind 가 실패하게 한다
+  private static void removeStaleSocket(Path path) throws IOException {
+    if (!Files.exists(path) || Files.isRegularFile(path) || Files.isDirectory(path)) {
+      return;
+    }
+    try (SocketChannel channel = SocketChannel.open(StandardProtocolFamily.UNIX)) {
+      channel.connect(UnixDomainSocketAddress.of(path));
+    } catch (ConnectException e) {
+      Files.delete(path);
+    }
+  }
+
+  private void serve(InputStream in, OutputStream out) throws IOException {
+    DataInputStream input = new DataInputStream(new BufferedInputStream(in));
+    DataOutputStream output = new DataOutputStream(new BufferedOutputStream(out));
+    for (; ; ) {
+      int count;
+      try {
+        count = input.readInt();
+      } catch (EOFException e) {
+        return;
+      }
+      if (count == 0) {
+        return;
+      }
+      if (count < 0 || count > MAX_BATCH) {
+        throw new IOException("Batch of " + count + " requests.");
+      }
+
+      List<Future<Response>> futures = new ArrayList<>(count);
+      long[] deadlines = new long[count];
+      int budget = MAX_BATCH_BYTES;
+      for (int i = 0; i < count; i++) {
+        int timeout = input.readInt();
+        byte[] script = readBytes(input, budget);
+        budget -= script.length;
+        byte[] scriptInput = readBytes(input, budget);
+        budget -= scriptInput.length;
+        deadlines[i] = System.nanoTime()
+            + TimeUnit.MILLISECONDS.toNanos(timeout > 0 ? timeout : defaultTimeoutMillis);
+        futures.add(pool.submit(
+            () -> execute(new String(script, UTF_8), new String(scriptInput, UTF_8))));
+      }
+
+      for (int i = 0; i < count; i++) {
+        Response response = await(futures.get(i), deadlines[i]);
+        output.writeInt(response.status);
+        writeString(output, response.output);
+        writeString(output, response.errors);
+      }
+      output.flush();
+    }
+  }
+
+  private Response execute(String source, String input) {
+    Worker worker = workers.get();
+    worker.output.reset();
+    worker.errors.reset();
+    PreparedScript script = prepare(source, worker.err);
+    Isolate.Status status = script == null ? Isolate.Status.COMPILE_ERROR
+        : worker.isolate.run(script, Map.of("input", input));
+    return new Response(status.exitCode, worker.output.toString(UTF_8),
+        worker.errors.toString(UTF_8));
+  }
+
+  // 컴파일 오류가 난 스크립트는 남기지 않으므로 다시 보내면 다시 분석한다
+  private PreparedScript prepare(String source, PrintStream err) {
+    PreparedScript script;
+    synchronized (prepared) {
+      script = prepared.get(source);
+    }
+    if (script == null) {
+      script = engine.prepare(source, err);
+      if (script != null) {
+        synchronized (prepared) {
+          prepared.put(source, script);
+        }
+      }
+    }
+    return script;
+  }
+
+  // 시간 제한을 넘기면 작업 스레드를 인터럽트하고, 인터프리터는 다음 확인 지점에서 멈춘다
+  private static Response await(Future<Response> future, long deadline) {
+    try {
+      return future.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+    } catch (TimeoutException e) {
+      future.cancel(true);
+      return new Response(Isolate.Status.CANCELLED.exitCode, "", "Timed out.\n");
+    } catch (ExecutionException e) {
+      String message = e.getCause() instanceof StackOverflowError ? "Stack overflow."
+          : e.getCause().toString();
+      return new Response(Isolate.Status.RUNTIME_ERROR.exitCode, "", message + "\n");
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return new Response(Isolate.Status.CANCELLED.exitCode, "", "Interrupted.\n");
+    }
+  }
+
+  static void writeString(DataOutputStream output, String value) throws IOException {
+    byte[] bytes = value.getBytes(UTF_8);
+    output.writeInt(bytes.length);
+    output.write(bytes);
+  }
+
+  static String readString(DataInputStream input) throws IOException {
+    return new String(readBytes(input, MAX_STRING), UTF_8);
+  }
+
+  private static byte[] readBytes(DataInputStream input, int limit) throws IOException {
+    int length = input.readInt();
+    if (length < 0 || length > Math.min(limit, MAX_STRING)) {
+      throw new IOException("String of " + length + " bytes in request.");
+    }
+    byte[] bytes = new byte[length];
+    input.readFully(bytes);
+    return bytes;
+  }
+}
@@ -0,0 +1,111 @@
+package lox;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadFactory;
+
+// spawn 으로 시작한 작업. 함수는 작업마다 새로 만든 인터프리터에서 돌므로 환경과 인라인 캐시는
+// 따로 있고, 전역과 출력과 오류 보고만 함께 쓴다. 같은 인스턴스를 여러 작업이 고칠 때는
+// 채널로 주고받아 순서를 정해야 한다
+final class LoxTask {
+
+  private static final ThreadFactory THREADS = threadFactory();
+
+  // 한 번의 실행에서 만든 작업들. 작업 안에서 만든 작업도 같은 묶음에 든다
+  static final class Group {
+
+    private final Set<LoxTask> running = ConcurrentHashMap.newKeySet();
+
+    // 스크립트가 끝나면 남은 작업을 기다린다. 기다리는 중에 인터럽트되면 작업도 멈춘다
+    void await() {
+      try {
+        while (!running.isEmpty()) {
+          for (LoxTask task : running) {
+            task.thread.join();
+          }
+        }
+      } catch (InterruptedException e) {
+        cancel();
+        throw new ScriptCancelled();
+      }
+    }
+
+    // 작업은 다음 확인 지점이나 채널에서 기다리던 곳에서 멈춘다
+    void cancel() {
+      for (LoxTask task : running) {
+        task.thread.interrupt();
+      }
+    }
+  }
+
+  private final Group group;
+  private final Thread thread;
+  private Object result;
+
+  private LoxTask(Interpreter interpreter, LoxCallable function) {
+    this.group = interpreter.tasks;
+    this.thread = THREADS.newThread(() -> run(interpreter, function));
+  }
+
+  static LoxTask spawn(Interpreter interpreter, Object function) {
+    if (!(function instanceof LoxCallable callable) || callable.arity() != 0) {
+      throw new NativeError("Can only spawn functions that take no arguments.");
+    }
+    interpreter.globals.share();
+    LoxTask task = new LoxTask(interpreter.fork(), callable);
+    task.group.running.add(task);
+    task.thread.start();
+    return task;
+  }
+
+  static LoxTask of(Object value) {
+    if (value instanceof LoxTask task) {
+      return task;
+    }
+    throw new NativeError("Operand must be a task.");
+  }
+
+  private void run(Interpreter interpreter, LoxCallable function) {
+    try {
+      result = function.call0(interpreter);
+    } catch (RuntimeError error) {
+      interpreter.diagnostics.runtimeError(error);
+    } catch (ScriptCancelled e) {
+      // 스크립트가 실패했거나 취소되었다
+    } finally {
+      group.running.remove(this);
+    }
+  }
+
+  // 작업이 끝날 때까지 기다려 함수의 반환값을 돌려준다. 실패한 작업은 nil 이다
+  Object join() {
+    try {
+      thread.join();
+    } catch (InterruptedException e) {
+      throw new ScriptCancelled();
+    }
+    return result;
+  }
+
+  @Override
+  public String toString() {
+    return "<task>";
+  }
+
+  // 빌드는 JDK 17 을 대상으로 하므로 가상 스레드는 리플렉션으로 찾는다. 없으면 데몬 플랫폼 스레드를 쓴다
+  private static ThreadFactory threadFactory() {
+    try {
+      Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+      Class<?> type = Class.forName("java.lang.Thread$Builder");
+      builder = type.getMethod("name", String.class, long.class)
+          .invoke(builder, "lox-task-", 0L);
+      return (ThreadFactory) type.getMethod("factory").invoke(builder);
+    } catch (ReflectiveOperationException e) {
+      return runnable -> {
+        Thread thread = new Thread(runnable, "lox-task");
+        thread.setDaemon(true);
+        return thread;
+      };
+    }
+  }
+}
@@ -0,0 +1,14 @@
+package lox;
+
+// 자바로 구현한 전역 함수가 잘못된 인자를 받으면 던진다. 함수는 호출 위치를 모르므로
+// 호출한 쪽이 괄호 토큰을 붙여 RuntimeError 로 바꾼다
+final class NativeError extends RuntimeException {
+
+  NativeError(String message) {
+    super(message, null, false, false);
+  }
+
+  RuntimeError at(Token paren) {
+    return new RuntimeError(paren, getMessage());
+  }
+}
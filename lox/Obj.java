@@ -0,0 +1,140 @@
+package lox;
+
+import java.util.Arrays;
+
+abstract class Obj {
+
+  static class Function extends Obj {
+
+    final String name;
+    final Chunk chunk = new Chunk();
+    int arity = 0;
+    int upvalueCount = 0;
+
+    Function(String name) {
+      this.name = name;
+    }
+
+    @Override
+    public String toString() {
+      if (name == null) {
+        return "<script>";
+      }
+      return "<fn " + name + ">";
+    }
+  }
+
+  interface NativeFn {
+
+    Object call(Object[] args, int offset);
+  }
+
+  static class Native extends Obj {
+
+    final int arity;
+    final NativeFn function;
+
+    Native(int arity, NativeFn function) {
+      this.arity = arity;
+      this.function = function;
+    }
+
+    @Override
+    public String toString() {
+      return "<native fn>";
+    }
+  }
+
+  static class Upvalue extends Obj {
+
+    // 열린 상태에서는 VM 스택의 인덱스, 닫히면 -1
+    int location;
+    Object closed;
+    Upvalue next;
+
+    Upvalue(int location) {
+      this.location = location;
+    }
+  }
+
+  static class Closure extends Obj {
+
+    final Function function;
+    final Upvalue[] upvalues;
+
+    Closure(Function function) {
+      this.function = function;
+      this.upvalues = new Upvalue[function.upvalueCount];
+    }
+
+    @Override
+    public String toString() {
+      return function.toString();
+    }
+  }
+
+  static class Class extends Obj {
+
+    final String name;
+    final SymbolMap<Closure> methods = new SymbolMap<>();
+    final Shape rootShape = new Shape();
+    int fieldCountHint = 0;
+    Closure initializer;
+
+    Class(String name) {
+      this.name = name;
+    }
+
+    @Override
+    public String toString() {
+      return name;
+    }
+  }
+
+  static class Instance extends Obj {
+
+    final Class klass;
+    Shape shape;
+    Object[] fields;
+
+    Instance(Class klass) {
+      this.klass = klass;
+      this.shape = klass.rootShape;
+      this.fields = new Object[klass.fieldCountHint];
+    }
+
+    void set(Symbol name, Object value) {
+      int index = shape.indexOf(name);
+      if (index == -1) {
+        shape = shape.withField(name);
+        index = shape.size() - 1;
+        if (index == fields.length) {
+          fields = Arrays.copyOf(fields, Math.max(4, index * 2));
+        }
+        klass.fieldCountHint = Math.max(klass.fieldCountHint, shape.size());
+      }
+      fields[index] = value;
+    }
+
+    @Override
+    public String toString() {
+      return klass.name + " instance";
+    }
+  }
+
+  static class BoundMethod extends Obj {
+
+    final Object receiver;
+    final Closure method;
+
+    BoundMethod(Object receiver, Closure method) {
+      this.receiver = receiver;
+      this.method = method;
+    }
+
+    @Override
+    public String toString() {
+      return method.toString();
+    }
+  }
+}
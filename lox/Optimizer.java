@@ -0,0 +1,568 @@
+package lox;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// 리졸버 다음에 돈다. 상수 식을 미리 계산하고 실행될 수 없는 분기를 지운다.
+// 노드 필드는 final 이므로 바뀐 부분만 새로 만들고 리졸버가 채운 값은 옮겨 적는다
+class Optimizer implements Expr.Visitor<Expr>, Stmt.Visitor<Stmt> {
+
+  private static final Object NOT_CONSTANT = new Object();
+  // 인라인할 함수 본문의 최대 노드 수
+  private static final int INLINE_LIMIT = 16;
+
+  // REPL 에서는 뒤에 오는 입력이 전역 함수를 다시 정의할 수 있으므로 인라인하지 않는다
+  private final boolean inline;
+  private final Set<Symbol> assignedGlobals = new HashSet<>();
+  private final SymbolMap<Stmt.Function> inlinable = new SymbolMap<>();
+  // 선언을 지난 함수만 인라인한다. 그 전의 호출은 정의되지 않은 변수 오류를 내야 한다
+  private final Set<Symbol> declared = new HashSet<>();
+  private boolean inlining = false;
+
+  Optimizer() {
+    this(true);
+  }
+
+  Optimizer(boolean inline) {
+    this.inline = inline;
+  }
+
+  // 첫 번째 패스에서 상수를 접으며 전역 대입을 모으고, 두 번째 패스에서 호출을 인라인한다
+  List<Stmt> optimize(List<Stmt> statements) {
+    List<Stmt> optimized = statements(statements);
+    if (!inline) {
+      return optimized;
+    }
+
+    findInlinable(optimized);
+    if (inlinable.size() == 0) {
+      return optimized;
+    }
+    inlining = true;
+    declared.clear();
+    return statements(optimized);
+  }
+
+  private Expr optimize(Expr expr) {
+    return expr == null ? null : expr.accept(this);
+  }
+
+  // 목록 밖의 자리에서는 지워진 문장을 빈 블록으로 채운다
+  private Stmt statement(Stmt stmt) {
+    Stmt optimized = stmt.accept(this);
+    if (optimized == null) {
+      Stmt.Block empty = new Stmt.Block(List.of());
+      empty.flat = true;
+      return empty;
+    }
+    return optimized;
+  }
+
+  // 바뀐 것이 없으면 원래 목록을 그대로 돌려준다
+  private List<Stmt> statements(List<Stmt> statements) {
+    List<Stmt> optimized = new ArrayList<>(statements.size());
+    boolean changed = false;
+    for (Stmt stmt : statements) {
+      Stmt result = stmt.accept(this);
+      changed |= result != stmt;
+      if (result != null) {
+        optimized.add(result);
+      }
+      // return 뒤의 문장은 실행되지 않는다
+      if (result instanceof Stmt.Return) {
+        changed |= optimized.size() < statements.size();
+        break;
+      }
+    }
+    return changed ? optimized : statements;
+  }
+
+  private List<Expr> expressions(List<Expr> expressions) {
+    List<Expr> optimized = new ArrayList<>(expressions.size());
+    boolean changed = false;
+    for (Expr expr : expressions) {
+      Expr result = optimize(expr);
+      changed |= result != expr;
+      optimized.add(result);
+    }
+    return changed ? optimized : expressions;
+  }
+
+  @Override
+  public Expr visitBinaryExpr(Expr.Binary expr) {
+    Expr left = optimize(expr.left);
+    Expr right = optimize(expr.right);
+    if (left instanceof Expr.Literal l && right instanceof Expr.Literal r) {
+      Object value = fold(expr.operator.type, l.value, r.value);
+      if (value != NOT_CONSTANT) {
+        return new Expr.Literal(value);
+      }
+    }
+    if (left == expr.left && right == expr.right) {
+      return expr;
+    }
+    return new Expr.Binary(left, expr.operator, right);
+  }
+
+  // 실행 시간 오류가 나야 하는 조합은 접지 않고 그대로 둔다
+  private static Object fold(TokenType operator, Object left, Object right) {
+    switch (operator) {
+      case EQUAL_EQUAL -> {
+        return Interpreter.isEqual(left, right);
+      }
+      case BANG_EQUAL -> {
+        return !Interpreter.isEqual(left, right);
+      }
+      case PLUS -> {
+        if (left instanceof String && right instanceof String) {
+          return (String) left + right;
+        }
+      }
+    }
+
+    if (!(left instanceof Double a) || !(right instanceof Double b)) {
+      return NOT_CONSTANT;
+    }
+    return switch (operator) {
+      case PLUS -> a + b;
+      case MINUS -> a - b;
+      case STAR -> a * b;
+      case SLASH -> a / b;
+      case GREATER -> a > b;
+      case GREATER_EQUAL -> a >= b;
+      case LESS -> a < b;
+      case LESS_EQUAL -> a <= b;
+      default -> NOT_CONSTANT;
+    };
+  }
+
+  @Override
+  public Expr visitGroupingExpr(Expr.Grouping expr) {
+    Expr expression = optimize(expr.expression);
+    if (expression instanceof Expr.Literal) {
+      return expression;
+    }
+    return expression == expr.expression ? expr : new Expr.Grouping(expression);
+  }
+
+  @Override
+  public Expr visitCallExpr(Expr.Call expr) {
+    Expr callee = optimize(expr.callee);
+    List<Expr> arguments = expressions(expr.arguments);
+    if (inlining && callee instanceof Expr.Variable variable && variable.depth == -1
+        && declared.contains(variable.name.symbol())
+        && inlinable.containsKey(variable.name.symbol())) {
+      Expr inlined = inline(inlinable.get(variable.name.symbol()), arguments);
+      if (inlined != null) {
+        return optimize(inlined);
+      }
+    }
+    if (callee == expr.callee && arguments == expr.arguments) {
+      return expr;
+    }
+    Expr.Call call = new Expr.Call(callee, expr.paren, arguments);
+    call.cacheSlot = expr.cacheSlot;
+    return call;
+  }
+
+  @Override
+  public Expr visitGetExpr(Expr.Get expr) {
+    Expr object = optimize(expr.object);
+    if (object == expr.object) {
+      return expr;
+    }
+    Expr.Get get = new Expr.Get(object, expr.name);
+    get.cacheSlot = expr.cacheSlot;
+    return get;
+  }
+
+  @Override
+  public Expr visitLiteralExpr(Expr.Literal expr) {
+    return expr;
+  }
+
+  // 논리 연산의 값은 피연산자 중 하나이므로 왼쪽이 상수면 어느 쪽인지 정해진다
+  @Override
+  public Expr visitLogicalExpr(Expr.Logical expr) {
+    Expr left = optimize(expr.left);
+    Expr right = optimize(expr.right);
+    if (left instanceof Expr.Literal literal) {
+      boolean truthy = Interpreter.isTruthy(literal.value);
+      if (expr.operator.type == TokenType.OR) {
+        return truthy ? left : right;
+      }
+      return truthy ? right : left;
+    }
+    if (left == expr.left && right == expr.right) {
+      return expr;
+    }
+    return new Expr.Logical(left, expr.operator, right);
+  }
+
+  @Override
+  public Expr visitGetIndexExpr(Expr.GetIndex expr) {
+    Expr object = optimize(expr.object);
+    Expr index = optimize(expr.index);
+    if (object == expr.object && index == expr.index) {
+      return expr;
+    }
+    return new Expr.GetIndex(object, expr.bracket, index);
+  }
+
+  @Override
+  public Expr visitSetIndexExpr(Expr.SetIndex expr) {
+    Expr object = optimize(expr.object);
+    Expr index = optimize(expr.index);
+    Expr value = optimize(expr.value);
+    if (object == expr.object && index == expr.index && value == expr.value) {
+      return expr;
+    }
+    return new Expr.SetIndex(object, expr.bracket, index, value);
+  }
+
+  @Override
+  public Expr visitSetExpr(Expr.Set expr) {
+    Expr object = optimize(expr.object);
+    Expr value = optimize(expr.value);
+    if (object == expr.object && value == expr.value) {
+      return expr;
+    }
+    Expr.Set set = new Expr.Set(object, expr.name, value);
+    set.cacheSlot = expr.cacheSlot;
+    return set;
+  }
+
+  @Override
+  public Expr visitSuperExpr(Expr.Super expr) {
+    return expr;
+  }
+
+  @Override
+  public Expr visitThisExpr(Expr.This expr) {
+    return expr;
+  }
+
+  @Override
+  public Expr visitUnaryExpr(Expr.Unary expr) {
+    Expr right = optimize(expr.right);
+    if (right instanceof Expr.Literal literal) {
+      if (expr.operator.type == TokenType.BANG) {
+        return new Expr.Literal(!Interpreter.isTruthy(literal.value));
+      }
+      if (literal.value instanceof Double value) {
+        return new Expr.Literal(-value);
+      }
+    }
+    return right == expr.right ? expr : new Expr.Unary(expr.operator, right);
+  }
+
+  @Override
+  public Expr visitVariableExpr(Expr.Variable expr) {
+    return expr;
+  }
+
+  @Override
+  public Expr visitAssignExpr(Expr.Assign expr) {
+    Expr value = optimize(expr.value);
+    if (expr.depth == -1) {
+      assignedGlobals.add(expr.name.symbol());
+    }
+    if (value == expr.value) {
+      return expr;
+    }
+    Expr.Assign assign = new Expr.Assign(expr.name, value);
+    assign.depth = expr.depth;
+    assign.slot = expr.slot;
+    return assign;
+  }
+
+  @Override
+  public Stmt visitBlockStmt(Stmt.Block stmt) {
+    List<Stmt> statements = statements(stmt.statements);
+    if (statements == stmt.statements) {
+      return stmt;
+    }
+    Stmt.Block block = new Stmt.Block(statements);
+    block.localCount = stmt.localCount;
+    block.flat = stmt.flat;
+    return block;
+  }
+
+  @Override
+  public Stmt visitClassStmt(Stmt.Class stmt) {
+    List<Stmt.Function> methods = new ArrayList<>(stmt.methods.size());
+    boolean changed = false;
+    for (Stmt.Function method : stmt.methods) {
+      Stmt.Function optimized = function(method);
+      changed |= optimized != method;
+      methods.add(optimized);
+    }
+    if (!changed) {
+      return stmt;
+    }
+    Stmt.Class klass = new Stmt.Class(stmt.name, stmt.superclass, methods);
+    klass.slot = stmt.slot;
+    return klass;
+  }
+
+  @Override
+  public Stmt visitExpressionStmt(Stmt.Expression stmt) {
+    Expr expression = optimize(stmt.expression);
+    return expression == stmt.expression ? stmt : new Stmt.Expression(expression);
+  }
+
+  @Override
+  public Stmt visitPrintStmt(Stmt.Print stmt) {
+    Expr expression = optimize(stmt.expression);
+    return expression == stmt.expression ? stmt : new Stmt.Print(expression);
+  }
+
+  @Override
+  public Stmt visitReturnStmt(Stmt.Return stmt) {
+    Expr value = optimize(stmt.value);
+    return value == stmt.value ? stmt : new Stmt.Return(stmt.keyword, value);
+  }
+
+  @Override
+  public Stmt visitFunctionStmt(Stmt.Function stmt) {
+    if (stmt.slot == -1) {
+      declared.add(stmt.name.symbol());
+    }
+    return function(stmt);
+  }
+
+  private Stmt.Function function(Stmt.Function stmt) {
+    List<Stmt> body = statements(stmt.body);
+    if (body == stmt.body) {
+      return stmt;
+    }
+    Stmt.Function function = new Stmt.Function(stmt.name, stmt.params, body);
+    function.slot = stmt.slot;
+    function.localCount = stmt.localCount;
+    return function;
+  }
+
+  @Override
+  public Stmt visitIfStmt(Stmt.If stmt) {
+    Expr condition = optimize(stmt.condition);
+    if (condition instanceof Expr.Literal literal) {
+      if (Interpreter.isTruthy(literal.value)) {
+        return stmt.thenBranch.accept(this);
+      }
+      return stmt.elseBranch == null ? null : stmt.elseBranch.accept(this);
+    }
+
+    Stmt thenBranch = statement(stmt.thenBranch);
+    Stmt elseBranch = stmt.elseBranch == null ? null : statement(stmt.elseBranch);
+    if (condition == stmt.condition && thenBranch == stmt.thenBranch
+        && elseBranch == stmt.elseBranch) {
+      return stmt;
+    }
+    return new Stmt.If(condition, thenBranch, elseBranch);
+  }
+
+  @Override
+  public Stmt visitVarStmt(Stmt.Var stmt) {
+    Expr initializer = optimize(stmt.initializer);
+    if (initializer == stmt.initializer) {
+      return stmt;
+    }
+    Stmt.Var var = new Stmt.Var(stmt.name, initializer);
+    var.slot = stmt.slot;
+    return var;
+  }
+
+  @Override
+  public Stmt visitWhileStmt(Stmt.While stmt) {
+    Expr condition = optimize(stmt.condition);
+    if (condition instanceof Expr.Literal literal && !Interpreter.isTruthy(literal.value)) {
+      return null;
+    }
+
+    Stmt body = statement(stmt.body);
+    if (condition == stmt.condition && body == stmt.body) {
+      return stmt;
+    }
+    return new Stmt.While(condition, body);
+  }
+
+  // 전역에서 한 번만 선언되고 다시 대입되지 않으며, 본문이 매개변수만 읽는 식 하나를
+  // 돌려주는 함수를 찾는다. 이런 함수는 호출도 클로저 캡처도 하지 않는다
+  private void findInlinable(List<Stmt> statements) {
+    Map<Symbol, Integer> declarations = new IdentityHashMap<>();
+    for (Stmt stmt : statements) {
+      Token name = null;
+      if (stmt instanceof Stmt.Function function) {
+        name = function.name;
+      } else if (stmt instanceof Stmt.Var var) {
+        name = var.name;
+      } else if (stmt instanceof Stmt.Class klass) {
+        name = klass.name;
+      }
+      if (name != null) {
+        declarations.merge(name.symbol(), 1, Integer::sum);
+      }
+    }
+
+    for (Stmt stmt : statements) {
+      if (!(stmt instanceof Stmt.Function function)
+          || declarations.get(function.name.symbol()) != 1
+          || assignedGlobals.contains(function.name.symbol())
+          || function.body.size() != 1
+          || !(function.body.get(0) instanceof Stmt.Return ret) || ret.value == null) {
+        continue;
+      }
+      int size = size(ret.value, function.params);
+      if (size != -1 && size <= INLINE_LIMIT) {
+        inlinable.put(function.name.symbol(), function);
+      }
+    }
+  }
+
+  // 인라인할 수 있는 식이면 노드 수를, 아니면 -1 을 돌려준다
+  private static int size(Expr expr, List<Token> params) {
+    if (expr instanceof Expr.Literal) {
+      return 1;
+    }
+    if (expr instanceof Expr.Variable variable) {
+      return parameter(variable, params) == -1 ? -1 : 1;
+    }
+    int size;
+    if (expr instanceof Expr.Grouping grouping) {
+      size = size(grouping.expression, params);
+    } else if (expr instanceof Expr.Unary unary) {
+      size = size(unary.right, params);
+    } else if (expr instanceof Expr.Get get) {
+      size = size(get.object, params);
+    } else if (expr instanceof Expr.GetIndex get) {
+      size = sum(size(get.object, params), size(get.index, params));
+    } else if (expr instanceof Expr.Binary binary) {
+      size = sum(size(binary.left, params), size(binary.right, params));
+    } else if (expr instanceof Expr.Logical logical) {
+      size = sum(size(logical.left, params), size(logical.right, params));
+    } else {
+      return -1;
+    }
+    return size == -1 ? -1 : size + 1;
+  }
+
+  private static int sum(int left, int right) {
+    return left == -1 || right == -1 ? -1 : left + right;
+  }
+
+  private static int parameter(Expr.Variable variable, List<Token> params) {
+    if (variable.depth != 0) {
+      return -1;
+    }
+    for (int i = 0; i < params.size(); i++) {
+      if (params.get(i).symbol() == variable.name.symbol()) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  // 인자를 먼저 모두 평가하는 호출과 결과가 같을 때만 매개변수를 인자 식으로 바꾼다.
+  // 부작용이나 오류가 없는 인자는 몇 번이든 옮겨도 된다. 그렇지 않은 인자는 하나만
+  // 허용하고, 그 매개변수가 한 번만 쓰이며 본문에서 가장 먼저 평가되어야 한다.
+  // 그 인자는 클로저로 지역 변수를 바꿀 수 있으므로 앞자리 인자가 읽는 지역 변수는
+  // 본문에서 그보다 먼저 읽어야 하는데, 그럴 수 없으니 이런 호출은 인라인하지 않는다
+  private static Expr inline(Stmt.Function function, List<Expr> arguments) {
+    if (function.params.size() != arguments.size()) {
+      return null;
+    }
+    Expr body = ((Stmt.Return) function.body.get(0)).value;
+
+    int[] uses = new int[arguments.size()];
+    countUses(body, function.params, uses);
+    for (int i = 0; i < arguments.size(); i++) {
+      if (isSimple(arguments.get(i))) {
+        continue;
+      }
+      if (uses[i] != 1 || !(first(body) instanceof Expr.Variable variable)
+          || parameter(variable, function.params) != i) {
+        return null;
+      }
+      for (int j = 0; j < i; j++) {
+        if (arguments.get(j) instanceof Expr.Variable && uses[j] > 0) {
+          return null;
+        }
+      }
+    }
+    return substitute(body, function.params, arguments);
+  }
+
+  private static boolean isSimple(Expr expr) {
+    return expr instanceof Expr.Literal || expr instanceof Expr.This
+        || expr instanceof Expr.Variable variable && variable.depth != -1;
+  }
+
+  private static void countUses(Expr expr, List<Token> params, int[] uses) {
+    if (expr instanceof Expr.Variable variable) {
+      uses[parameter(variable, params)]++;
+    } else if (expr instanceof Expr.Grouping grouping) {
+      countUses(grouping.expression, params, uses);
+    } else if (expr instanceof Expr.Unary unary) {
+      countUses(unary.right, params, uses);
+    } else if (expr instanceof Expr.Get get) {
+      countUses(get.object, params, uses);
+    } else if (expr instanceof Expr.GetIndex get) {
+      countUses(get.object, params, uses);
+      countUses(get.index, params, uses);
+    } else if (expr instanceof Expr.Binary binary) {
+      countUses(binary.left, params, uses);
+      countUses(binary.right, params, uses);
+    } else if (expr instanceof Expr.Logical logical) {
+      countUses(logical.left, params, uses);
+      countUses(logical.right, params, uses);
+    }
+  }
+
+  // 식을 평가할 때 가장 먼저 값을 만드는 잎 노드
+  private static Expr first(Expr expr) {
+    if (expr instanceof Expr.Grouping grouping) {
+      return first(grouping.expression);
+    } else if (expr instanceof Expr.Unary unary) {
+      return first(unary.right);
+    } else if (expr instanceof Expr.Get get) {
+      return first(get.object);
+    } else if (expr instanceof Expr.GetIndex get) {
+      return first(get.object);
+    } else if (expr instanceof Expr.Binary binary) {
+      return first(binary.left);
+    } else if (expr instanceof Expr.Logical logical) {
+      return first(logical.left);
+    }
+    return expr;
+  }
+
+  // 호출 지점마다 새 노드를 만들어 BinaryOp 특수화를 따로 쓰게 한다. 인라인 캐시는 이름이 같은
+  // 함수 본문의 번호를 그대로 쓴다
+  private static Expr substitute(Expr expr, List<Token> params, List<Expr> arguments) {
+    if (expr instanceof Expr.Variable variable) {
+      return arguments.get(parameter(variable, params));
+    } else if (expr instanceof Expr.Grouping grouping) {
+      return new Expr.Grouping(substitute(grouping.expression, params, arguments));
+    } else if (expr instanceof Expr.Unary unary) {
+      return new Expr.Unary(unary.operator, substitute(unary.right, params, arguments));
+    } else if (expr instanceof Expr.Get get) {
+      Expr.Get copy = new Expr.Get(substitute(get.object, params, arguments), get.name);
+      copy.cacheSlot = get.cacheSlot;
+      return copy;
+    } else if (expr instanceof Expr.GetIndex get) {
+      return new Expr.GetIndex(substitute(get.object, params, arguments), get.bracket,
+          substitute(get.index, params, arguments));
+    } else if (expr instanceof Expr.Binary binary) {
+      return new Expr.Binary(substitute(binary.left, params, arguments), binary.operator,
+          substitute(binary.right, params, arguments));
+    } else if (expr instanceof Expr.Logical logical) {
+      return new Expr.Logical(substitute(logical.left, params, arguments), logical.operator,
+          substitute(logical.right, params, arguments));
+    }
+    return expr;
+  }
+}
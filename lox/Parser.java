@@ -18,6 +18,7 @@ import static lox.TokenType.GREATER_EQUAL;
 import static lox.TokenType.IDENTIFIER;
 import static lox.TokenType.IF;
 import static lox.TokenType.LEFT_BRACE;
+import static lox.TokenType.LEFT_BRACKET;
 import static lox.TokenType.LEFT_PAREN;
 import static lox.TokenType.LESS;
 import static lox.TokenType.LESS_EQUAL;
@@ -29,6 +30,7 @@ import static lox.TokenType.PLUS;
 import static lox.TokenType.PRINT;
 import static lox.TokenType.RETURN;
 import static lox.TokenType.RIGHT_BRACE;
+import static lox.TokenType.RIGHT_BRACKET;
 import static lox.TokenType.RIGHT_PAREN;
 import static lox.TokenType.SEMICOLON;
 import static lox.TokenType.SLASH;
@@ -47,12 +49,25 @@ import java.util.function.Supplier;
 
 class Parser {
 
-  private final List<Token> tokens;
+  private final TokenSource tokens;
+  private final Diagnostics diagnostics;
 
-  private int current = 0;
+  // 파서는 토큰을 한 개 앞까지만 본다
+  private Token previous;
+  private Token next;
 
   public Parser(List<Token> tokens) {
+    this(tokens.iterator()::next);
+  }
+
+  Parser(TokenSource tokens) {
+    this(tokens, new Diagnostics(System.err));
+  }
+
+  Parser(TokenSource tokens, Diagnostics diagnostics) {
     this.tokens = tokens;
+    this.diagnostics = diagnostics;
+    this.next = tokens.nextToken();
   }
 
   private static class ParseError extends RuntimeException {
@@ -196,6 +211,10 @@ class Parser {
       condition = new Expr.Literal(true);
     }
     body = new Stmt.While(condition, body);
+
+    if (initializer != null) {
+      body = new Stmt.Block(Arrays.asList(initializer, body));
+    }
     return body;
   }
 
@@ -304,6 +323,10 @@ class Parser {
       } else if (match(DOT)) {
         Token name = consume(IDENTIFIER, "Expect property name after '.'.");
         expr = new Expr.Get(expr, name);
+      } else if (match(LEFT_BRACKET)) {
+        Expr index = expression();
+        Token bracket = consume(RIGHT_BRACKET, "Expect ']' after index.");
+        expr = new Expr.GetIndex(expr, bracket, index);
       } else {
         break;
       }
@@ -399,6 +422,8 @@ class Parser {
       } else if (expr instanceof Expr.Get) {
         Expr.Get get = (Expr.Get) expr;
         return new Expr.Set(get.object, get.name, value);
+      } else if (expr instanceof Expr.GetIndex get) {
+        return new Expr.SetIndex(get.object, get.bracket, get.index, value);
       }
       error(equals, "Invalid assignment target.");
     }
@@ -436,7 +461,7 @@ class Parser {
   }
 
   private ParseError error(Token Token, String message) {
-    Lox.error(Token, message);
+    diagnostics.error(Token, message);
     return new ParseError();
   }
 
@@ -478,9 +503,10 @@ class Parser {
 
   private Token advance() {
     if (!isAtEnd()) {
-      current++;
+      previous = next;
+      next = tokens.nextToken();
     }
-    return previous();
+    return previous;
   }
 
   private boolean isAtEnd() {
@@ -488,10 +514,10 @@ class Parser {
   }
 
   private Token peek() {
-    return tokens.get(current);
+    return next;
   }
 
   private Token previous() {
-    return tokens.get(current - 1);
+    return previous;
   }
 }
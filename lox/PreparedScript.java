@@ -0,0 +1,21 @@
+package lox;
+
+import java.util.List;
+
+// 프런트엔드를 한 번만 거친 프로그램. 실행 중에 바뀌는 상태(전역, 인라인 캐시, 클래스의 Shape)는
+// 모두 실행하는 인터프리터가 가지므로 여러 isolate 가 동시에 실행해도 된다. 구문 트리에 남는
+// 쓰기는 BinaryOp 특수화와 JIT 결과뿐인데, 둘 다 실행과 무관해서 어느 스레드가 써도 결과가 같다
+public final class PreparedScript {
+
+  final List<Stmt> statements;
+  // 리졸버가 나눠 준 인라인 캐시 번호의 개수
+  final int cacheSites;
+  // VM 엔진으로 준비했을 때만 있다
+  final Obj.Function function;
+
+  PreparedScript(List<Stmt> statements, int cacheSites, Obj.Function function) {
+    this.statements = List.copyOf(statements);
+    this.cacheSites = cacheSites;
+    this.function = function;
+  }
+}
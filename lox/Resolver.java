@@ -1,20 +1,53 @@
 package lox;
 
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 import java.util.Stack;
 import lox.Expr.Super;
 
 public class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
 
-  private final Interpreter interpreter;
-  private final Stack<Map<String, Boolean>> scopes = new Stack<>();
+  private final Diagnostics diagnostics;
+  private final Stack<Scope> scopes = new Stack<>();
+  // 인라인 캐시는 인터프리터가 갖고 노드에는 번호만 적으므로, 해석한 트리를 여러 실행이 함께 쓸 수 있다
+  private int cacheSites;
   private FunctionType currentFunction = FunctionType.NONE;
   private ClassType currentClass = ClassType.NONE;
 
-  Resolver(Interpreter interpreter) {
-    this.interpreter = interpreter;
+  private static class Local {
+
+    final int slot;
+    boolean defined = false;
+
+    Local(int slot) {
+      this.slot = slot;
+    }
+  }
+
+  // 클로저가 잡을 수 없는 블록은 환경을 만들지 않고 변수를 바깥 프레임의 슬롯에 둔다.
+  // frame 은 실제로 Environment 가 만들어지는 스코프로, 평평한 스코프는 바깥 것을 가리킨다
+  private static class Scope {
+
+    final SymbolMap<Local> names = new SymbolMap<>();
+    final Scope frame;
+    // 평평한 스코프가 끝나면 frame 의 다음 슬롯을 여기로 되돌려 형제 블록이 슬롯을 다시 쓴다
+    final int base;
+    int next = 0;
+    int size = 0;
+
+    Scope(Scope frame) {
+      this.frame = frame == null ? this : frame;
+      this.base = frame == null ? 0 : frame.next;
+    }
+
+    boolean isFlat() {
+      return frame != this;
+    }
+
+    int allocate() {
+      int slot = frame.next++;
+      frame.size = Math.max(frame.size, frame.next);
+      return slot;
+    }
   }
 
   private enum FunctionType {
@@ -30,27 +63,96 @@ public class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
     SUBCLASS
   }
 
+  Resolver() {
+    this(new Diagnostics(System.err));
+  }
+
+  Resolver(Diagnostics diagnostics) {
+    this(diagnostics, 0);
+  }
+
+  // 같은 인터프리터에서 이어 실행할 코드는 앞 코드가 쓴 캐시 번호 다음부터 받는다
+  Resolver(Diagnostics diagnostics, int firstCacheSite) {
+    this.diagnostics = diagnostics;
+    this.cacheSites = firstCacheSite;
+  }
+
+  // 지금까지 나눠 준 캐시 번호의 개수
+  int cacheSites() {
+    return cacheSites;
+  }
+
   @Override
   public Void visitThisExpr(Expr.This expr) {
     if (currentClass == ClassType.NONE) {
-      Lox.error(expr.keyword, "Can't use 'this' outside of a class.");
+      diagnostics.error(expr.keyword, "Can't use 'this' outside of a class.");
       return null;
     }
-    resolveLocal(expr, expr.keyword);
+    expr.depth = resolveLocal(expr.keyword);
+    expr.slot = slotOf(expr.keyword, expr.depth);
     return null;
   }
 
   @Override
   public Void visitBlockStmt(Stmt.Block stmt) {
-    beginScope();
+    // 전역 바로 아래 블록은 슬롯을 빌릴 프레임이 없다
+    stmt.flat = !scopes.isEmpty() && !declaresClosures(stmt.statements);
+    if (stmt.flat) {
+      scopes.push(new Scope(scopes.peek().frame));
+    } else {
+      beginScope();
+    }
     resolve(stmt.statements);
-    endScope();
+    stmt.localCount = endScope();
     return null;
   }
 
+  // 함수나 클래스 선언만 현재 환경을 잡는다. 식 안에는 선언이 올 수 없다
+  private static boolean declaresClosures(List<Stmt> statements) {
+    for (Stmt statement : statements) {
+      if (declaresClosures(statement)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static boolean declaresClosures(Stmt statement) {
+    if (statement instanceof Stmt.Function || statement instanceof Stmt.Class) {
+      return true;
+    }
+    if (statement instanceof Stmt.Block block) {
+      return declaresClosures(block.statements);
+    }
+    if (statement instanceof Stmt.If ifStmt) {
+      return declaresClosures(ifStmt.thenBranch)
+          || (ifStmt.elseBranch != null && declaresClosures(ifStmt.elseBranch));
+    }
+    if (statement instanceof Stmt.While whileStmt) {
+      return declaresClosures(whileStmt.body);
+    }
+    return false;
+  }
+
   @Override
   public Void visitGetExpr(Expr.Get expr) {
     resolve(expr.object);
+    expr.cacheSlot = cacheSites++;
+    return null;
+  }
+
+  @Override
+  public Void visitGetIndexExpr(Expr.GetIndex expr) {
+    resolve(expr.object);
+    resolve(expr.index);
+    return null;
+  }
+
+  @Override
+  public Void visitSetIndexExpr(Expr.SetIndex expr) {
+    resolve(expr.object);
+    resolve(expr.index);
+    resolve(expr.value);
     return null;
   }
 
@@ -58,17 +160,19 @@ public class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
   public Void visitSetExpr(Expr.Set expr) {
     resolve(expr.value);
     resolve(expr.object);
+    expr.cacheSlot = cacheSites++;
     return null;
   }
 
   @Override
   public Void visitSuperExpr(Super expr) {
     if (currentClass == ClassType.NONE) {
-      Lox.error(expr.keyword, "Can't use 'super' outside of a class");
+      diagnostics.error(expr.keyword, "Can't use 'super' outside of a class");
     } else if (currentClass != ClassType.SUBCLASS) {
-      Lox.error(expr.keyword, "Can't use 'super' in a class with no superclass");
+      diagnostics.error(expr.keyword, "Can't use 'super' in a class with no superclass");
     }
-    resolveLocal(expr, expr.keyword);
+    expr.depth = resolveLocal(expr.keyword);
+    expr.slot = slotOf(expr.keyword, expr.depth);
     return null;
   }
 
@@ -77,11 +181,11 @@ public class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
     ClassType enclosingClass = currentClass;
     currentClass = ClassType.CLASS;
 
-    declare(stmt.name);
+    stmt.slot = declare(stmt.name);
     define(stmt.name);
 
-    if (stmt.superclass != null && stmt.name.lexeme.equals(stmt.superclass.name.lexeme)) {
-      Lox.error(stmt.superclass.name, "A class can't inherit from itseslf.");
+    if (stmt.superclass != null && stmt.name.symbol() == stmt.superclass.name.symbol()) {
+      diagnostics.error(stmt.superclass.name, "A class can't inherit from itseslf.");
     }
 
     if (stmt.superclass != null) {
@@ -91,19 +195,16 @@ public class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
 
     if (stmt.superclass != null) {
       beginScope();
-      scopes.peek().put("super", true);
+      declareImplicit(Symbol.SUPER);
     }
 
-    beginScope();
-    scopes.peek().put("this", true);
     for (Stmt.Function method : stmt.methods) {
       FunctionType declaration = FunctionType.METHOD;
-      if (method.name.lexeme.equals("init")) {
+      if (method.name.symbol() == Symbol.INIT) {
         declaration = FunctionType.INITIALIZER;
       }
       resolveFunction(method, declaration);
     }
-    endScope();
 
     if (stmt.superclass != null) {
       endScope();
@@ -127,11 +228,17 @@ public class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
   }
 
   private void beginScope() {
-    scopes.push(new HashMap<>());
+    scopes.push(new Scope(null));
   }
 
-  private void endScope() {
-    scopes.pop();
+  // 평평한 스코프는 0 을 돌려준다
+  private int endScope() {
+    Scope scope = scopes.pop();
+    if (scope.isFlat()) {
+      scope.frame.next = scope.base;
+      return 0;
+    }
+    return scope.size;
   }
 
   @Override
@@ -149,11 +256,11 @@ public class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
   @Override
   public Void visitReturnStmt(Stmt.Return stmt) {
     if (currentFunction == FunctionType.NONE) {
-      Lox.error(stmt.keyword, "Can't return from top level code.");
+      diagnostics.error(stmt.keyword, "Can't return from top level code.");
     }
     if (stmt.value != null) {
       if (currentFunction == FunctionType.INITIALIZER) {
-        Lox.error(stmt.keyword, "Can't return a value from an initializer.");
+        diagnostics.error(stmt.keyword, "Can't return a value from an initializer.");
       }
       resolve(stmt.value);
     }
@@ -163,7 +270,7 @@ public class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
 
   @Override
   public Void visitFunctionStmt(Stmt.Function stmt) {
-    declare(stmt.name);
+    stmt.slot = declare(stmt.name);
     define(stmt.name);
 
     resolveFunction(stmt, FunctionType.FUNCTION);
@@ -174,12 +281,15 @@ public class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
     FunctionType enclosingFunction = currentFunction;
     currentFunction = type;
     beginScope();
+    if (type == FunctionType.METHOD || type == FunctionType.INITIALIZER) {
+      declareImplicit(Symbol.THIS);
+    }
     for (Token param : function.params) {
       declare(param);
       define(param);
     }
     resolve(function.body);
-    endScope();
+    function.localCount = endScope();
     currentFunction = enclosingFunction;
   }
 
@@ -195,7 +305,7 @@ public class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
 
   @Override
   public Void visitVarStmt(Stmt.Var stmt) {
-    declare(stmt.name);
+    stmt.slot = declare(stmt.name);
     if (stmt.initializer != null) {
       resolve(stmt.initializer);
     }
@@ -207,20 +317,29 @@ public class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
     if (scopes.isEmpty()) {
       return;
     }
-    scopes.peek().put(name.lexeme, true);
+    scopes.peek().names.get(name.symbol()).defined = true;
   }
 
-  private void declare(Token name) {
+  private int declare(Token name) {
     if (scopes.isEmpty()) {
-      return;
+      return -1;
     }
 
-    Map<String, Boolean> scope = scopes.peek();
-    if (scope.containsKey(name.lexeme)) {
-      Lox.error(name, "Already a variable with this name in this scope.");
+    SymbolMap<Local> scope = scopes.peek().names;
+    if (scope.containsKey(name.symbol())) {
+      diagnostics.error(name, "Already a variable with this name in this scope.");
+      return scope.get(name.symbol()).slot;
     }
 
-    scope.put(name.lexeme, false);
+    Local local = new Local(scopes.peek().allocate());
+    scope.put(name.symbol(), local);
+    return local.slot;
+  }
+
+  private void declareImplicit(Symbol name) {
+    Local local = new Local(scopes.peek().allocate());
+    local.defined = true;
+    scopes.peek().names.put(name, local);
   }
 
   @Override
@@ -246,6 +365,10 @@ public class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
   @Override
   public Void visitCallExpr(Expr.Call expr) {
     resolve(expr.callee);
+    // 메서드 호출만 캐시를 쓴다
+    if (expr.callee instanceof Expr.Get) {
+      expr.cacheSlot = cacheSites++;
+    }
 
     for (Expr argument : expr.arguments) {
       resolve(argument);
@@ -274,19 +397,41 @@ public class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
 
   @Override
   public Void visitVariableExpr(Expr.Variable expr) {
-    if (!scopes.isEmpty() && Boolean.FALSE.equals(scopes.peek().get(expr.name.lexeme))) {
-      Lox.error(expr.name, "Can't read local variable in its own initializer.");
+    if (!scopes.isEmpty()) {
+      Local local = scopes.peek().names.get(expr.name.symbol());
+      if (local != null && !local.defined) {
+        diagnostics.error(expr.name, "Can't read local variable in its own initializer.");
+      }
     }
 
-    resolveLocal(expr, expr.name);
+    expr.depth = resolveLocal(expr.name);
+    expr.slot = slotOf(expr.name, expr.depth);
     return null;
   }
 
-  private void resolveLocal(Expr expr, Token name) {
+  // 깊이는 실행 중 거쳐 갈 Environment 의 수이므로 평평한 스코프는 세지 않는다
+  private int resolveLocal(Token name) {
+    int depth = 0;
     for (int i = scopes.size() - 1; i >= 0; i--) {
-      if (scopes.get(i).containsKey(name.lexeme)) {
-        interpreter.resolve(expr, scopes.size() - 1 - i);
-        return;
+      Scope scope = scopes.get(i);
+      if (scope.names.containsKey(name.symbol())) {
+        return depth;
+      }
+      if (!scope.isFlat()) {
+        depth++;
+      }
+    }
+    return -1;
+  }
+
+  private int slotOf(Token name, int depth) {
+    if (depth == -1) {
+      return -1;
+    }
+    for (int i = scopes.size() - 1; ; i--) {
+      Local local = scopes.get(i).names.get(name.symbol());
+      if (local != null) {
+        return local.slot;
       }
     }
   }
@@ -294,7 +439,8 @@ public class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
   @Override
   public Void visitAssignExpr(Expr.Assign expr) {
     resolve(expr.value);
-    resolveLocal(expr, expr.name);
+    expr.depth = resolveLocal(expr.name);
+    expr.slot = slotOf(expr.name, expr.depth);
     return null;
   }
 }
@@ -2,57 +2,128 @@ package lox;
 
 import static lox.TokenType.*;
 
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.EnumMap;
 import java.util.List;
 import java.util.Map;
 
-class Scanner {
+// 소스를 바이트 버퍼로 직접 읽는다. 파일은 메모리 매핑한 버퍼를 그대로 넘기므로 소스 복사가 없다
+class Scanner implements TokenSource {
 
-	private final String source;
+	private final ByteBuffer source;
+	private final Diagnostics diagnostics;
+	private final Charset charset;
+	private final int length;
 	private int start = 0;
-	private final List<Token> tokens = new ArrayList<>();
+	// scanToken 이 만든 토큰. 파서가 가져갈 때까지 한 개만 들고 있다
+	private Token pending;
 	private int current = 0;
 	private int line = 1;
-	private static final Map<String, TokenType> keywords;
+	private static final Map<TokenType, String> lexemes;
+	private static final String[] keywords = {
+		"and", "class", "else", "false", "for", "fun", "if", "nil", "or", "print", "return",
+		"super", "this", "true", "var", "while"
+	};
+	private static final TokenType[] keywordTypes = {
+		AND, CLASS, ELSE, FALSE, FOR, FUN, IF, NIL, OR, PRINT, RETURN,
+		SUPER, THIS, TRUE, VAR, WHILE
+	};
+	// 10^22 까지는 double 로 정확히 표현된다
+	private static final double[] powersOfTen = new double[23];
+	private static final int MAX_EXACT_DIGITS = 15;
+
+	// 식별자와 키워드를 바이트 범위로 찾아 Symbol 로 바꾸는 열린 주소 해시 테이블
+	private Symbol[] symbols = new Symbol[64];
+	private TokenType[] symbolTypes = new TokenType[64];
+	private int[] symbolHashes = new int[64];
+	private int symbolCount = 0;
 
 	static {
-		keywords = new HashMap<>();
-		keywords.put("and", AND);
-		keywords.put("class", CLASS);
-		keywords.put("else", ELSE);
-		keywords.put("false", FALSE);
-		keywords.put("for", FOR);
-		keywords.put("fun", FUN);
-		keywords.put("if", IF);
-		keywords.put("nil", NIL);
-		keywords.put("or", OR);
-		keywords.put("print", PRINT);
-		keywords.put("return", RETURN);
-		keywords.put("super", SUPER);
-		keywords.put("this", THIS);
-		keywords.put("true", TRUE);
-		keywords.put("var", VAR);
-		keywords.put("while", WHILE);
+		lexemes = new EnumMap<>(TokenType.class);
+		lexemes.put(LEFT_PAREN, "(");
+		lexemes.put(RIGHT_PAREN, ")");
+		lexemes.put(LEFT_BRACE, "{");
+		lexemes.put(RIGHT_BRACE, "}");
+		lexemes.put(LEFT_BRACKET, "[");
+		lexemes.put(RIGHT_BRACKET, "]");
+		lexemes.put(SEMICOLON, ";");
+		lexemes.put(COMMA, ",");
+		lexemes.put(DOT, ".");
+		lexemes.put(MINUS, "-");
+		lexemes.put(PLUS, "+");
+		lexemes.put(STAR, "*");
+		lexemes.put(SLASH, "/");
+		lexemes.put(BANG, "!");
+		lexemes.put(BANG_EQUAL, "!=");
+		lexemes.put(EQUAL, "=");
+		lexemes.put(EQUAL_EQUAL, "==");
+		lexemes.put(LESS, "<");
+		lexemes.put(LESS_EQUAL, "<=");
+		lexemes.put(GREATER, ">");
+		lexemes.put(GREATER_EQUAL, ">=");
+
+		powersOfTen[0] = 1;
+		for (int i = 1; i < powersOfTen.length; i++) {
+			powersOfTen[i] = powersOfTen[i - 1] * 10;
+		}
 	}
 
 	public Scanner(String source) {
+		this(source, new Diagnostics(System.err));
+	}
+
+	Scanner(String source, Diagnostics diagnostics) {
+		this(ByteBuffer.wrap(source.getBytes(StandardCharsets.UTF_8)), StandardCharsets.UTF_8,
+			diagnostics);
+	}
+
+	Scanner(ByteBuffer source, Charset charset) {
+		this(source, charset, new Diagnostics(System.err));
+	}
+
+	Scanner(ByteBuffer source, Charset charset, Diagnostics diagnostics) {
 		this.source = source;
+		this.diagnostics = diagnostics;
+		this.charset = charset;
+		this.length = source.limit();
+		for (int i = 0; i < keywords.length; i++) {
+			byte[] name = keywords[i].getBytes(StandardCharsets.US_ASCII);
+			intern(ByteBuffer.wrap(name), 0, name.length, keywordTypes[i]);
+		}
 	}
 
 	List<Token> scanTokens() {
-		while (!isAtEnd()) {
+		List<Token> tokens = new ArrayList<>();
+		Token token;
+		do {
+			token = nextToken();
+			tokens.add(token);
+		} while (token.type != EOF);
+		return tokens;
+	}
+
+	// 토큰 하나를 만들 때까지만 스캔한다. 끝에 닿으면 계속 EOF 를 돌려준다
+	@Override
+	public Token nextToken() {
+		while (pending == null) {
+			if (isAtEnd()) {
+				// end
+				return new Token(EOF, "", null, line);
+			}
 			start = current;
 			scanToken();
 		}
 
-		// end
-		tokens.add(new Token(EOF, "", null, line));
-		return tokens;
+		Token token = pending;
+		pending = null;
+		return token;
 	}
 
 	private boolean isAtEnd() {
-		return current >= source.length();
+		return current >= length;
 	}
 
 	private void scanToken() {
@@ -62,6 +133,8 @@ class Scanner {
 			case ')' -> addToken(RIGHT_PAREN);
 			case '{' -> addToken(LEFT_BRACE);
 			case '}' -> addToken(RIGHT_BRACE);
+			case '[' -> addToken(LEFT_BRACKET);
+			case ']' -> addToken(RIGHT_BRACKET);
 			case ';' -> addToken(SEMICOLON);
 			case ',' -> addToken(COMMA);
 			case '.' -> addToken(DOT);
@@ -90,8 +163,9 @@ class Scanner {
 					number();
 				} else if (isAlpha(c)) {
 					identifier();
-				} else {
-					Lox.error(line, "Unexpected character.");
+				} else if ((c & 0xc0) != 0x80) {
+					// 여러 바이트 문자는 첫 바이트에서 한 번만 알린다
+					diagnostics.error(line, "Unexpected character.");
 				}
 			}
 		}
@@ -102,12 +176,73 @@ class Scanner {
 			advance();
 		}
 
-		String text = source.substring(start, current);
-		TokenType type = keywords.get(text);
-		if (type == null) {
-			type = IDENTIFIER;
+		int index = intern(source, start, current, IDENTIFIER);
+		pending = new Token(symbolTypes[index], symbols[index], line);
+	}
+
+	// 처음 보는 이름일 때만 String 을 만들어 전역 심볼 테이블에서 찾는다
+	private int intern(ByteBuffer buffer, int from, int to, TokenType type) {
+		int hash = 0;
+		for (int i = from; i < to; i++) {
+			hash = 31 * hash + buffer.get(i);
+		}
+
+		int mask = symbols.length - 1;
+		int index = hash & mask;
+		while (symbols[index] != null) {
+			if (symbolHashes[index] == hash && sameName(symbols[index], buffer, from, to)) {
+				return index;
+			}
+			index = (index + 1) & mask;
+		}
+
+		if (symbolCount * 2 >= symbols.length) {
+			growSymbols();
+			return intern(buffer, from, to, type);
+		}
+		byte[] name = new byte[to - from];
+		buffer.get(from, name);
+		symbols[index] = Symbol.of(new String(name, StandardCharsets.US_ASCII));
+		symbolTypes[index] = type;
+		symbolHashes[index] = hash;
+		symbolCount++;
+		return index;
+	}
+
+	private static boolean sameName(Symbol symbol, ByteBuffer buffer, int from, int to) {
+		String name = symbol.name;
+		if (name.length() != to - from) {
+			return false;
+		}
+		for (int i = 0; i < name.length(); i++) {
+			if (name.charAt(i) != buffer.get(from + i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private void growSymbols() {
+		Symbol[] oldSymbols = symbols;
+		TokenType[] oldTypes = symbolTypes;
+		int[] oldHashes = symbolHashes;
+		symbols = new Symbol[oldSymbols.length * 2];
+		symbolTypes = new TokenType[symbols.length];
+		symbolHashes = new int[symbols.length];
+
+		int mask = symbols.length - 1;
+		for (int i = 0; i < oldSymbols.length; i++) {
+			if (oldSymbols[i] == null) {
+				continue;
+			}
+			int index = oldHashes[i] & mask;
+			while (symbols[index] != null) {
+				index = (index + 1) & mask;
+			}
+			symbols[index] = oldSymbols[i];
+			symbolTypes[index] = oldTypes[i];
+			symbolHashes[index] = oldHashes[i];
 		}
-		addToken(type);
 	}
 
 	private boolean isAlpha(char c) {
@@ -124,48 +259,64 @@ class Scanner {
 		return c >= '0' && c <= '9';
 	}
 
+	// 유효 숫자가 15 자리 이하이면 정수로 모은 뒤 10 의 거듭제곱으로 한 번 나눈다.
+	// 두 값이 모두 정확하므로 결과는 Double.parseDouble 과 같게 반올림된다
 	private void number() {
+		long digits = charAt(start) - '0';
+		int count = 1;
 		while (isDigit(peek())) {
-			advance();
+			digits = digits * 10 + (advance() - '0');
+			count++;
 		}
 
+		int scale = 0;
 		if (peek() == '.' && isDigit(peekNext())) {
 			advance();
 
 			while (isDigit(peek())) {
-				advance();
+				digits = digits * 10 + (advance() - '0');
+				count++;
+				scale++;
 			}
 		}
 
-		addToken(NUMBER,
-			Double.parseDouble(source.substring(start, current)));
+		double value;
+		if (count <= MAX_EXACT_DIGITS) {
+			value = digits / powersOfTen[scale];
+		} else {
+			value = Double.parseDouble(text(start, current));
+		}
+		pending = new Token(NUMBER, source, charset, start, current, value, line);
 	}
 
 	private char peekNext() {
-		if (current + 1 >= source.length()) {
+		if (current + 1 >= length) {
 			return '\0';
 		}
-		return source.charAt(current + 1);
+		return charAt(current + 1);
 	}
 
 	private char advance() {
-		return source.charAt(current++);
+		return charAt(current++);
 	}
 
-	private void addToken(TokenType type) {
-		addToken(type, null);
+	private char charAt(int index) {
+		return (char) (source.get(index) & 0xff);
 	}
 
-	private void addToken(TokenType type, Object literal) {
-		String text = source.substring(start, current);
-		tokens.add(new Token(type, text, literal, line));
+	private String text(int from, int to) {
+		return charset.decode(source.slice(from, to - from)).toString();
+	}
+
+	private void addToken(TokenType type) {
+		pending = new Token(type, lexemes.get(type), null, line);
 	}
 
 	private boolean match(char expected) {
 		if (isAtEnd()) {
 			return false;
 		}
-		if (source.charAt(current) != expected) {
+		if (charAt(current) != expected) {
 			return false;
 		}
 
@@ -177,7 +328,7 @@ class Scanner {
 		if (isAtEnd()) {
 			return '\0';
 		}
-		return source.charAt(current);
+		return charAt(current);
 	}
 
 	private void string() {
@@ -189,13 +340,13 @@ class Scanner {
 		}
 
 		if (isAtEnd()) {
-			Lox.error(line, "Unterminated string.");
+			diagnostics.error(line, "Unterminated string.");
 			return;
 		}
 
 		advance();
 
-		String value = source.substring(start + 1, current - 1);
-		addToken(STRING, value);
+		String value = text(start + 1, current - 1);
+		pending = new Token(STRING, source, charset, start, current, value, line);
 	}
-}
\ No newline at end of file
+}
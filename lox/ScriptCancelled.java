@@ -0,0 +1,19 @@
+package lox;
+
+// 실행 스레드가 인터럽트되면 스크립트를 멈추려고 던진다. 서버가 시간 제한을 넘긴 요청을 끊을 때 쓰며
+// RuntimeError 가 아니므로 인터프리터의 오류 보고를 거치지 않고 isolate 까지 올라간다
+final class ScriptCancelled extends RuntimeException {
+
+  // 인터럽트 확인은 루프와 호출에서 이만큼에 한 번만 한다
+  static final int POLL_MASK = 1023;
+
+  ScriptCancelled() {
+    super("Script cancelled.", null, false, false);
+  }
+
+  static void check() {
+    if (Thread.interrupted()) {
+      throw new ScriptCancelled();
+    }
+  }
+}
@@ -0,0 +1,58 @@
+package lox;
+
+import java.util.Arrays;
+
+final class Shape {
+
+  // 필드가 이 수보다 많아지면 선형 탐색 대신 해시 테이블을 쓴다
+  private static final int LINEAR_LIMIT = 8;
+
+  private final Symbol[] names;
+  private final SymbolMap<Integer> slots;
+  private final SymbolMap<Shape> transitions = new SymbolMap<>();
+
+  Shape() {
+    this.names = new Symbol[0];
+    this.slots = null;
+  }
+
+  private Shape(Shape parent, Symbol name) {
+    this.names = Arrays.copyOf(parent.names, parent.names.length + 1);
+    this.names[parent.names.length] = name;
+    if (names.length > LINEAR_LIMIT) {
+      slots = new SymbolMap<>();
+      for (int i = 0; i < names.length; i++) {
+        slots.put(names[i], i);
+      }
+    } else {
+      slots = null;
+    }
+  }
+
+  int size() {
+    return names.length;
+  }
+
+  int indexOf(Symbol name) {
+    if (slots != null) {
+      Integer index = slots.get(name);
+      return index == null ? -1 : index;
+    }
+    for (int i = 0; i < names.length; i++) {
+      if (names[i] == name) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  // 같은 클래스의 인스턴스를 여러 작업이 만들면 전이 표를 동시에 고칠 수 있다. 캐시를 놓쳤을 때만 온다
+  synchronized Shape withField(Symbol name) {
+    Shape next = transitions.get(name);
+    if (next == null) {
+      next = new Shape(this, name);
+      transitions.put(name, next);
+    }
+    return next;
+  }
+}
@@ -25,6 +25,8 @@ abstract class Stmt {
    }
 
    final List<Stmt> statements;
+   int localCount = 0;
+   boolean flat = false;
  }
  static class Class extends Stmt {
   Class(Token name, Expr.Variable superclass, List<Stmt.Function> methods) {
@@ -41,6 +43,7 @@ abstract class Stmt {
    final Token name;
    final Expr.Variable superclass;
    final List<Stmt.Function> methods;
+   int slot = -1;
  }
  static class Expression extends Stmt {
   Expression(Expr expression) {
@@ -95,6 +98,10 @@ abstract class Stmt {
    final Token name;
    final List<Token> params;
    final List<Stmt> body;
+   int slot = -1;
+   int localCount = 0;
+   int hotness = 0;
+   JitCode compiled = null;
  }
  static class If extends Stmt {
   If(Expr condition, Stmt thenBranch, Stmt elseBranch) {
@@ -125,6 +132,7 @@ abstract class Stmt {
 
    final Token name;
    final Expr initializer;
+   int slot = -1;
  }
  static class While extends Stmt {
   While(Expr condition, Stmt body) {
@@ -0,0 +1,68 @@
+package lox;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// 이름마다 하나뿐인 객체. 이름은 == 로 비교하고 해시는 만들 때 한 번 정한다.
+// 표는 심볼을 약하게 잡으므로 서버가 받은 스크립트의 이름도 아무도 쓰지 않으면 수거된다
+final class Symbol {
+
+  private static final ConcurrentHashMap<String, Entry> table = new ConcurrentHashMap<>();
+  private static final ReferenceQueue<Symbol> collected = new ReferenceQueue<>();
+  private static final AtomicInteger nextId = new AtomicInteger();
+
+  static final Symbol INIT = of("init");
+  static final Symbol THIS = of("this");
+  static final Symbol SUPER = of("super");
+
+  final String name;
+  // 일련번호에 황금비 상수를 곱해 열린 주소 테이블에서 고르게 퍼지게 한다
+  final int hash;
+
+  private Symbol(String name) {
+    this.name = name;
+    this.hash = nextId.getAndIncrement() * 0x9e3779b9;
+  }
+
+  private static final class Entry extends WeakReference<Symbol> {
+
+    final String name;
+
+    Entry(Symbol symbol) {
+      super(symbol, collected);
+      this.name = symbol.name;
+    }
+  }
+
+  // 살아 있는 심볼이 있으면 그것을 돌려준다. 수거된 항목은 새 심볼로 바꾼다
+  static Symbol of(String name) {
+    expunge();
+    for (; ; ) {
+      Entry entry = table.get(name);
+      Symbol symbol = entry == null ? null : entry.get();
+      if (symbol != null) {
+        return symbol;
+      }
+      symbol = new Symbol(name);
+      Entry created = new Entry(symbol);
+      if (entry == null ? table.putIfAbsent(name, created) == null
+          : table.replace(name, entry, created)) {
+        return symbol;
+      }
+    }
+  }
+
+  private static void expunge() {
+    for (Reference<? extends Symbol> entry; (entry = collected.poll()) != null; ) {
+      table.remove(((Entry) entry).name, entry);
+    }
+  }
+
+  @Override
+  public String toString() {
+    return name;
+  }
+}
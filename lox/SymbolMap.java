@@ -0,0 +1,82 @@
+package lox;
+
+import java.util.function.BiConsumer;
+
+// Symbol 을 키로 하는 열린 주소 해시 테이블. 키는 동일성으로만 비교한다
+final class SymbolMap<V> {
+
+  private Symbol[] keys = new Symbol[8];
+  private Object[] values = new Object[8];
+  private int size = 0;
+
+  int size() {
+    return size;
+  }
+
+  boolean containsKey(Symbol key) {
+    return keys[indexOf(key)] == key;
+  }
+
+  @SuppressWarnings("unchecked")
+  V get(Symbol key) {
+    int index = indexOf(key);
+    return keys[index] == key ? (V) values[index] : null;
+  }
+
+  @SuppressWarnings("unchecked")
+  V put(Symbol key, V value) {
+    int index = indexOf(key);
+    if (keys[index] == key) {
+      V previous = (V) values[index];
+      values[index] = value;
+      return previous;
+    }
+
+    // 적재율을 1/2 아래로 유지한다
+    if ((size + 1) * 2 > keys.length) {
+      grow();
+      index = indexOf(key);
+    }
+    keys[index] = key;
+    values[index] = value;
+    size++;
+    return null;
+  }
+
+  void putAll(SymbolMap<? extends V> other) {
+    other.forEach(this::put);
+  }
+
+  @SuppressWarnings("unchecked")
+  void forEach(BiConsumer<Symbol, ? super V> action) {
+    for (int i = 0; i < keys.length; i++) {
+      if (keys[i] != null) {
+        action.accept(keys[i], (V) values[i]);
+      }
+    }
+  }
+
+  // 키가 있으면 그 자리를, 없으면 넣을 빈자리를 돌려준다
+  private int indexOf(Symbol key) {
+    int mask = keys.length - 1;
+    int index = key.hash & mask;
+    while (keys[index] != null && keys[index] != key) {
+      index = (index + 1) & mask;
+    }
+    return index;
+  }
+
+  private void grow() {
+    Symbol[] oldKeys = keys;
+    Object[] oldValues = values;
+    keys = new Symbol[oldKeys.length * 2];
+    values = new Object[keys.length];
+    for (int i = 0; i < oldKeys.length; i++) {
+      if (oldKeys[i] != null) {
+        int index = indexOf(oldKeys[i]);
+        keys[index] = oldKeys[i];
+        values[index] = oldValues[i];
+      }
+    }
+  }
+}
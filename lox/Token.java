@@ -1,20 +1,64 @@
 package lox;
 
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
 class Token {
 
   final TokenType type;
-  final String lexeme;
   final Object literal;
   final int line;
+  private String lexeme;
+  private Symbol symbol;
+  // 숫자·문자열 토큰은 원본 버퍼의 위치만 들고 있다가 lexeme 이 필요할 때 만든다
+  private final ByteBuffer source;
+  private final Charset charset;
+  private final int start;
+  private final int end;
 
   public Token(TokenType type, String lexeme, Object literal, int line) {
+    this(type, lexeme, null, null, 0, 0, literal, line);
+  }
+
+  // 스캐너가 식별자와 키워드에 쓴다. lexeme 은 심볼의 이름을 그대로 쓴다
+  Token(TokenType type, Symbol symbol, int line) {
+    this(type, symbol.name, null, null, 0, 0, null, line);
+    this.symbol = symbol;
+  }
+
+  Token(TokenType type, ByteBuffer source, Charset charset, int start, int end, Object literal,
+      int line) {
+    this(type, null, source, charset, start, end, literal, line);
+  }
+
+  private Token(TokenType type, String lexeme, ByteBuffer source, Charset charset, int start,
+      int end, Object literal, int line) {
     this.type = type;
     this.lexeme = lexeme;
+    this.source = source;
+    this.charset = charset;
+    this.start = start;
+    this.end = end;
     this.literal = literal;
     this.line = line;
   }
 
+  String lexeme() {
+    if (lexeme == null) {
+      lexeme = charset.decode(source.slice(start, end - start)).toString();
+    }
+    return lexeme;
+  }
+
+  // 스캐너를 거치지 않은 토큰은 처음 물을 때 심볼 테이블에서 찾는다
+  Symbol symbol() {
+    if (symbol == null) {
+      symbol = Symbol.of(lexeme());
+    }
+    return symbol;
+  }
+
   public String toString() {
-    return type + " " + lexeme + " " + literal;
+    return type + " " + lexeme() + " " + literal;
   }
 }
@@ -0,0 +1,8 @@
+package lox;
+
+// 파서가 토큰을 하나씩 당겨 가는 통로. 전체 토큰 목록을 메모리에 두지 않아도 된다
+interface TokenSource {
+
+  // 끝에 닿은 뒤에는 EOF 토큰을 돌려준다
+  Token nextToken();
+}
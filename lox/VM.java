@@ -0,0 +1,597 @@
+package lox;
+
+import static lox.OpCode.*;
+
+import java.io.PrintStream;
+import java.util.Arrays;
+
+class VM {
+
+  private static final int FRAMES_MAX = 1024;
+  private static final int STACK_MAX = FRAMES_MAX * 256;
+
+  private static class CallFrame {
+
+    Obj.Closure closure;
+    int ip;
+    int base;
+  }
+
+  private static class VMError extends RuntimeException {
+
+    VMError(String message) {
+      super(message, null, false, false);
+    }
+  }
+
+  // 이 표식이 놓인 스택 칸의 실제 값은 numbers 의 같은 칸에 박싱 없이 들어 있다
+  private static final Object NUMBER = new Object();
+
+  private final Object[] stack = new Object[STACK_MAX];
+  private final double[] numbers = new double[STACK_MAX];
+  private int stackTop = 0;
+  private final CallFrame[] frames = new CallFrame[FRAMES_MAX];
+  private int frameCount = 0;
+  private SymbolMap<Object> globals = new SymbolMap<>();
+  private Obj.Upvalue openUpvalues;
+  private int polls = 0;
+  private final PrintStream out;
+  private final Diagnostics diagnostics;
+
+  VM() {
+    this(System.out, new Diagnostics(System.err));
+  }
+
+  VM(PrintStream out, Diagnostics diagnostics) {
+    this.out = out;
+    this.diagnostics = diagnostics;
+    for (int i = 0; i < FRAMES_MAX; i++) {
+      frames[i] = new CallFrame();
+    }
+    defineNatives();
+  }
+
+  // 준비된 스크립트를 새 전역에서 돌릴 때 스택을 새로 잡지 않고 전역만 비운다
+  void resetGlobals() {
+    globals = new SymbolMap<>();
+    defineNatives();
+  }
+
+  void defineGlobal(String name, Object value) {
+    globals.put(Symbol.of(name), value);
+  }
+
+  private void defineNatives() {
+    defineNative("clock", 0, (args, offset) -> (double) System.currentTimeMillis() / 1000.0);
+    defineNative("list", 0, (args, offset) -> new LoxList());
+    defineNative("push", 2, (args, offset) -> {
+      list(args[offset]).add(args[offset + 1]);
+      return null;
+    });
+    defineNative("pop", 1, (args, offset) -> list(args[offset]).removeLast());
+    defineNative("len", 1, (args, offset) -> (double) list(args[offset]).size());
+  }
+
+  private static LoxList list(Object value) {
+    if (value instanceof LoxList list) {
+      return list;
+    }
+    throw new VMError("Operand must be a list.");
+  }
+
+  void interpret(Obj.Function function) {
+    Obj.Closure closure = new Obj.Closure(function);
+    stack[stackTop++] = closure;
+    try {
+      call(closure, 0);
+      run();
+    } catch (VMError error) {
+      CallFrame frame = frames[frameCount - 1];
+      int line = frame.closure.function.chunk.getLine(frame.ip - 1);
+      diagnostics.runtimeError(error.getMessage(), line);
+    } finally {
+      resetStack();
+    }
+  }
+
+  private void defineNative(String name, int arity, Obj.NativeFn function) {
+    globals.put(Symbol.of(name), new Obj.Native(arity, function));
+  }
+
+  // 오류로 멈춘 뒤에도 밖으로 나간 클로저는 변수 값을 가져야 하므로 스택을 비우기 전에 닫는다
+  private void resetStack() {
+    closeUpvalues(0);
+    Arrays.fill(stack, 0, Math.max(stackTop, 1), null);
+    stackTop = 0;
+    frameCount = 0;
+    openUpvalues = null;
+  }
+
+  private void run() {
+    Object[] stack = this.stack;
+    double[] numbers = this.numbers;
+
+    frameLoop:
+    for (; ; ) {
+      CallFrame frame = frames[frameCount - 1];
+      byte[] code = frame.closure.function.chunk.code;
+      Object[] constants = frame.closure.function.chunk.constants;
+      Obj.Upvalue[] upvalues = frame.closure.upvalues;
+      int ip = frame.ip;
+      int base = frame.base;
+      int sp = stackTop;
+
+      try {
+        for (; ; ) {
+          switch (code[ip++]) {
+            case OP_CONSTANT -> {
+              stack[sp++] = constants[readShort(code, ip)];
+              ip += 2;
+            }
+            case OP_NIL -> stack[sp++] = null;
+            case OP_TRUE -> stack[sp++] = true;
+            case OP_FALSE -> stack[sp++] = false;
+            case OP_POP -> sp--;
+            case OP_GET_LOCAL -> {
+              int slot = base + (code[ip++] & 0xff);
+              numbers[sp] = numbers[slot];
+              stack[sp++] = stack[slot];
+            }
+            case OP_SET_LOCAL -> {
+              int slot = base + (code[ip++] & 0xff);
+              numbers[slot] = numbers[sp - 1];
+              stack[slot] = stack[sp - 1];
+            }
+            case OP_GET_GLOBAL -> {
+              Symbol name = (Symbol) constants[readShort(code, ip)];
+              ip += 2;
+              Object value = globals.get(name);
+              if (value == null && !globals.containsKey(name)) {
+                throw new VMError("Undefined variable '" + name + "'.");
+              }
+              stack[sp++] = value;
+            }
+            case OP_DEFINE_GLOBAL -> {
+              sp--;
+              globals.put((Symbol) constants[readShort(code, ip)], box(stack, numbers, sp));
+              ip += 2;
+            }
+            case OP_SET_GLOBAL -> {
+              Symbol name = (Symbol) constants[readShort(code, ip)];
+              ip += 2;
+              if (!globals.containsKey(name)) {
+                throw new VMError("Undefined variable '" + name + "'.");
+              }
+              globals.put(name, box(stack, numbers, sp - 1));
+            }
+            case OP_GET_UPVALUE -> {
+              Obj.Upvalue upvalue = upvalues[code[ip++] & 0xff];
+              if (upvalue.location >= 0) {
+                numbers[sp] = numbers[upvalue.location];
+                stack[sp++] = stack[upvalue.location];
+              } else {
+                stack[sp++] = upvalue.closed;
+              }
+            }
+            case OP_SET_UPVALUE -> {
+              Obj.Upvalue upvalue = upvalues[code[ip++] & 0xff];
+              if (upvalue.location >= 0) {
+                numbers[upvalue.location] = numbers[sp - 1];
+                stack[upvalue.location] = stack[sp - 1];
+              } else {
+                upvalue.closed = box(stack, numbers, sp - 1);
+              }
+            }
+            case OP_GET_PROPERTY -> {
+              Symbol name = (Symbol) constants[readShort(code, ip)];
+              ip += 2;
+              if (!(stack[sp - 1] instanceof Obj.Instance instance)) {
+                throw new VMError("Only instances have properties.");
+              }
+              int index = instance.shape.indexOf(name);
+              if (index != -1) {
+                stack[sp - 1] = instance.fields[index];
+              } else {
+                stack[sp - 1] = bindMethod(instance.klass, instance, name, ".");
+              }
+            }
+            case OP_SET_PROPERTY -> {
+              Symbol name = (Symbol) constants[readShort(code, ip)];
+              ip += 2;
+              if (!(stack[sp - 2] instanceof Obj.Instance instance)) {
+                throw new VMError("Only instances have fields.");
+              }
+              Object value = box(stack, numbers, --sp);
+              instance.set(name, value);
+              stack[sp - 1] = value;
+            }
+            case OP_GET_SUPER -> {
+              Symbol name = (Symbol) constants[readShort(code, ip)];
+              ip += 2;
+              Obj.Class superclass = (Obj.Class) stack[--sp];
+              stack[sp - 1] = bindMethod(superclass, stack[sp - 1], name, "");
+            }
+            case OP_EQUAL -> {
+              sp--;
+              stack[sp - 1] = isEqual(stack, numbers, sp - 1, sp);
+            }
+            case OP_NOT_EQUAL -> {
+              sp--;
+              stack[sp - 1] = !isEqual(stack, numbers, sp - 1, sp);
+            }
+            case OP_GREATER -> {
+              sp--;
+              checkNumbers(stack[sp - 1], stack[sp]);
+              stack[sp - 1] = number(stack, numbers, sp - 1) > number(stack, numbers, sp);
+            }
+            case OP_GREATER_EQUAL -> {
+              sp--;
+              checkNumbers(stack[sp - 1], stack[sp]);
+              stack[sp - 1] = number(stack, numbers, sp - 1) >= number(stack, numbers, sp);
+            }
+            case OP_LESS -> {
+              sp--;
+              checkNumbers(stack[sp - 1], stack[sp]);
+              stack[sp - 1] = number(stack, numbers, sp - 1) < number(stack, numbers, sp);
+            }
+            case OP_LESS_EQUAL -> {
+              sp--;
+              checkNumbers(stack[sp - 1], stack[sp]);
+              stack[sp - 1] = number(stack, numbers, sp - 1) <= number(stack, numbers, sp);
+            }
+            case OP_ADD -> {
+              Object b = stack[--sp];
+              Object a = stack[sp - 1];
+              if (isNumber(a) && isNumber(b)) {
+                numbers[sp - 1] = number(stack, numbers, sp - 1) + number(stack, numbers, sp);
+                stack[sp - 1] = NUMBER;
+              } else if (a instanceof String && b instanceof String) {
+                stack[sp - 1] = a + (String) b;
+              } else {
+                throw new VMError("Operands must be two numbers or two strings");
+              }
+            }
+            case OP_SUBTRACT -> {
+              sp--;
+              checkNumbers(stack[sp - 1], stack[sp]);
+              numbers[sp - 1] = number(stack, numbers, sp - 1) - number(stack, numbers, sp);
+              stack[sp - 1] = NUMBER;
+            }
+            case OP_MULTIPLY -> {
+              sp--;
+              checkNumbers(stack[sp - 1], stack[sp]);
+              numbers[sp - 1] = number(stack, numbers, sp - 1) * number(stack, numbers, sp);
+              stack[sp - 1] = NUMBER;
+            }
+            case OP_DIVIDE -> {
+              sp--;
+              checkNumbers(stack[sp - 1], stack[sp]);
+              numbers[sp - 1] = number(stack, numbers, sp - 1) / number(stack, numbers, sp);
+              stack[sp - 1] = NUMBER;
+            }
+            case OP_NOT -> stack[sp - 1] = !isTruthy(stack[sp - 1]);
+            case OP_NEGATE -> {
+              if (!isNumber(stack[sp - 1])) {
+                throw new VMError("Operand must be a number");
+              }
+              numbers[sp - 1] = -number(stack, numbers, sp - 1);
+              stack[sp - 1] = NUMBER;
+            }
+            case OP_PRINT -> {
+              sp--;
+              out.println(Interpreter.stringify(box(stack, numbers, sp)));
+            }
+            case OP_JUMP -> ip += readShort(code, ip) + 2;
+            case OP_JUMP_IF_FALSE -> {
+              if (!isTruthy(stack[sp - 1])) {
+                ip += readShort(code, ip);
+              }
+              ip += 2;
+            }
+            case OP_LOOP -> {
+              ip -= readShort(code, ip) - 2;
+              poll();
+            }
+            case OP_CALL -> {
+              int argCount = code[ip++] & 0xff;
+              frame.ip = ip;
+              stackTop = sp;
+              callValue(stack[sp - argCount - 1], argCount);
+              continue frameLoop;
+            }
+            case OP_INVOKE -> {
+              Symbol name = (Symbol) constants[readShort(code, ip)];
+              int argCount = code[ip + 2] & 0xff;
+              ip += 3;
+              frame.ip = ip;
+              stackTop = sp;
+              invoke(name, argCount);
+              continue frameLoop;
+            }
+            case OP_SUPER_INVOKE -> {
+              Symbol name = (Symbol) constants[readShort(code, ip)];
+              int argCount = code[ip + 2] & 0xff;
+              ip += 3;
+              frame.ip = ip;
+              Obj.Class superclass = (Obj.Class) stack[--sp];
+              stackTop = sp;
+              invokeFromClass(superclass, name, argCount, "");
+              continue frameLoop;
+            }
+            case OP_RETURN -> {
+              Object result = stack[--sp];
+              double number = numbers[sp];
+              closeUpvalues(base);
+              frameCount--;
+              if (frameCount == 0) {
+                stackTop = 0;
+                return;
+              }
+              stackTop = base;
+              numbers[stackTop] = number;
+              stack[stackTop++] = result;
+              continue frameLoop;
+            }
+            case OP_CLOSURE -> {
+              Obj.Function function = (Obj.Function) constants[readShort(code, ip)];
+              ip += 2;
+              Obj.Closure closure = new Obj.Closure(function);
+              for (int i = 0; i < closure.upvalues.length; i++) {
+                boolean isLocal = code[ip++] == 1;
+                int index = code[ip++] & 0xff;
+                if (isLocal) {
+                  closure.upvalues[i] = captureUpvalue(base + index);
+                } else {
+                  closure.upvalues[i] = upvalues[index];
+                }
+              }
+              stack[sp++] = closure;
+            }
+            case OP_CLOSE_UPVALUE -> {
+              closeUpvalues(sp - 1);
+              sp--;
+            }
+            case OP_CLASS -> {
+              stack[sp++] = new Obj.Class(((Symbol) constants[readShort(code, ip)]).name);
+              ip += 2;
+            }
+            case OP_INHERIT -> {
+              if (!(stack[sp - 2] instanceof Obj.Class superclass)) {
+                throw new VMError("Superclass must be a class.");
+              }
+              Obj.Class subclass = (Obj.Class) stack[sp - 1];
+              subclass.methods.putAll(superclass.methods);
+              subclass.initializer = superclass.initializer;
+              sp--;
+            }
+            case OP_METHOD -> {
+              Symbol name = (Symbol) constants[readShort(code, ip)];
+              ip += 2;
+              Obj.Closure method = (Obj.Closure) stack[sp - 1];
+              Obj.Class klass = (Obj.Class) stack[sp - 2];
+              klass.methods.put(name, method);
+              if (name == Symbol.INIT) {
+                klass.initializer = method;
+              }
+              sp--;
+            }
+            // 숫자만 담은 리스트는 numbers 칸과 바로 주고받아 박싱하지 않는다
+            case OP_GET_INDEX -> {
+              sp--;
+              if (!(stack[sp - 1] instanceof LoxList list)) {
+                throw new VMError("Can only index lists.");
+              }
+              int index = index(list, stack, numbers, sp);
+              if (list.holdsNumbers()) {
+                numbers[sp - 1] = list.number(index);
+                stack[sp - 1] = NUMBER;
+              } else {
+                stack[sp - 1] = list.get(index);
+              }
+            }
+            case OP_SET_INDEX -> {
+              sp -= 2;
+              if (!(stack[sp - 1] instanceof LoxList list)) {
+                throw new VMError("Can only index lists.");
+              }
+              int index = index(list, stack, numbers, sp);
+              Object value = stack[sp + 1];
+              if (value == NUMBER) {
+                list.set(index, numbers[sp + 1]);
+              } else {
+                list.set(index, value);
+              }
+              numbers[sp - 1] = numbers[sp + 1];
+              stack[sp - 1] = value;
+            }
+            default -> throw new VMError("Unknown opcode " + code[ip - 1] + ".");
+          }
+        }
+      } catch (VMError error) {
+        frame.ip = ip;
+        throw error;
+      }
+    }
+  }
+
+  private static int readShort(byte[] code, int ip) {
+    return ((code[ip] & 0xff) << 8) | (code[ip + 1] & 0xff);
+  }
+
+  private void callValue(Object callee, int argCount) {
+    if (callee instanceof Obj.Closure closure) {
+      call(closure, argCount);
+    } else if (callee instanceof Obj.BoundMethod bound) {
+      stack[stackTop - argCount - 1] = bound.receiver;
+      call(bound.method, argCount);
+    } else if (callee instanceof Obj.Class klass) {
+      stack[stackTop - argCount - 1] = new Obj.Instance(klass);
+      if (klass.initializer != null) {
+        call(klass.initializer, argCount);
+      } else if (argCount != 0) {
+        throw new VMError("Excepted 0 arguments but got " + argCount + ".");
+      }
+    } else if (callee instanceof Obj.Native nativeFn) {
+      checkArity(nativeFn.arity, argCount);
+      for (int i = stackTop - argCount; i < stackTop; i++) {
+        stack[i] = box(stack, numbers, i);
+      }
+      Object result = nativeFn.function.call(stack, stackTop - argCount);
+      stackTop -= argCount + 1;
+      stack[stackTop++] = result;
+    } else {
+      throw new VMError("Can only call functions and classes");
+    }
+  }
+
+  private void invoke(Symbol name, int argCount) {
+    Object receiver = stack[stackTop - argCount - 1];
+    if (!(receiver instanceof Obj.Instance instance)) {
+      throw new VMError("Only instances have properties.");
+    }
+
+    int index = instance.shape.indexOf(name);
+    if (index != -1) {
+      Object value = instance.fields[index];
+      stack[stackTop - argCount - 1] = value;
+      callValue(value, argCount);
+      return;
+    }
+    invokeFromClass(instance.klass, name, argCount, ".");
+  }
+
+  private void invokeFromClass(Obj.Class klass, Symbol name, int argCount, String suffix) {
+    Obj.Closure method = klass.methods.get(name);
+    if (method == null) {
+      throw new VMError("Undefined property '" + name + "'" + suffix);
+    }
+    call(method, argCount);
+  }
+
+  private Obj.BoundMethod bindMethod(Obj.Class klass, Object receiver, Symbol name,
+      String suffix) {
+    Obj.Closure method = klass.methods.get(name);
+    if (method == null) {
+      throw new VMError("Undefined property '" + name + "'" + suffix);
+    }
+    return new Obj.BoundMethod(receiver, method);
+  }
+
+  private void call(Obj.Closure closure, int argCount) {
+    poll();
+    checkArity(closure.function.arity, argCount);
+    if (frameCount == FRAMES_MAX) {
+      throw new VMError("Stack overflow.");
+    }
+
+    CallFrame frame = frames[frameCount++];
+    frame.closure = closure;
+    frame.ip = 0;
+    frame.base = stackTop - argCount - 1;
+  }
+
+  private void poll() {
+    if ((++polls & ScriptCancelled.POLL_MASK) == 0) {
+      ScriptCancelled.check();
+    }
+  }
+
+  private static int index(LoxList list, Object[] stack, double[] numbers, int slot) {
+    if (isNumber(stack[slot])) {
+      int index = list.index(number(stack, numbers, slot));
+      if (index != -1) {
+        return index;
+      }
+    }
+    throw new VMError(list.indexError(box(stack, numbers, slot)));
+  }
+
+  private void checkArity(int arity, int argCount) {
+    if (argCount != arity) {
+      throw new VMError("Excepted " + arity + " arguments but got " + argCount + ".");
+    }
+  }
+
+  private Obj.Upvalue captureUpvalue(int location) {
+    Obj.Upvalue previous = null;
+    Obj.Upvalue upvalue = openUpvalues;
+    while (upvalue != null && upvalue.location > location) {
+      previous = upvalue;
+      upvalue = upvalue.next;
+    }
+
+    if (upvalue != null && upvalue.location == location) {
+      return upvalue;
+    }
+
+    Obj.Upvalue created = new Obj.Upvalue(location);
+    created.next = upvalue;
+    if (previous == null) {
+      openUpvalues = created;
+    } else {
+      previous.next = created;
+    }
+    return created;
+  }
+
+  private void closeUpvalues(int last) {
+    while (openUpvalues != null && openUpvalues.location >= last) {
+      Obj.Upvalue upvalue = openUpvalues;
+      upvalue.closed = box(stack, numbers, upvalue.location);
+      upvalue.location = -1;
+      openUpvalues = upvalue.next;
+    }
+  }
+
+  private static boolean isNumber(Object value) {
+    return value == NUMBER || value instanceof Double;
+  }
+
+  private static double number(Object[] stack, double[] numbers, int slot) {
+    Object value = stack[slot];
+    return value == NUMBER ? numbers[slot] : (double) value;
+  }
+
+  // 값이 스택 밖으로 나갈 때만 Double 로 박싱한다
+  private static Object box(Object[] stack, double[] numbers, int slot) {
+    Object value = stack[slot];
+    return value == NUMBER ? (Object) numbers[slot] : value;
+  }
+
+  private static void checkNumbers(Object left, Object right) {
+    if (isNumber(left) && isNumber(right)) {
+      return;
+    }
+    throw new VMError("Operands must be numbers");
+  }
+
+  private static boolean isTruthy(Object object) {
+    if (object == null) {
+      return false;
+    }
+    if (object instanceof Boolean) {
+      return (boolean) object;
+    }
+    return true;
+  }
+
+  private static boolean isEqual(Object[] stack, double[] numbers, int leftSlot,
+      int rightSlot) {
+    Object left = stack[leftSlot];
+    Object right = stack[rightSlot];
+    if (isNumber(left) && isNumber(right)) {
+      return Double.doubleToLongBits(number(stack, numbers, leftSlot))
+          == Double.doubleToLongBits(number(stack, numbers, rightSlot));
+    }
+    left = box(stack, numbers, leftSlot);
+    right = box(stack, numbers, rightSlot);
+    if (left == null && right == null) {
+      return true;
+    }
+    if (left == null) {
+      return false;
+    }
+
+    return left.equals(right);
+  }
+}
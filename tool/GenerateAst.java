@@ -14,29 +14,35 @@ public class GenerateAst {
     }
     String outputDir = args[0];
     defineAst(outputDir, "Expr", List.of(
-        "Binary : Expr left, Token operator, Expr right",
+        "Binary : Expr left, Token operator, Expr right ; BinaryOp op = BinaryOp.UNINITIALIZED",
         "Grouping : Expr expression",
-        "Call    : Expr callee, Token paren, List<Expr> arguments",
-        "Get     : Expr object, Token name",
+        "Call    : Expr callee, Token paren, List<Expr> arguments"
+            + " ; int cacheSlot = -1",
+        "Get     : Expr object, Token name ; int cacheSlot = -1",
+        "GetIndex : Expr object, Token bracket, Expr index",
         "Literal : Object value",
         "Logical : Expr left, Token operator, Expr right",
-        "Set     : Expr object, Token name, Expr value",
-        "Super   : Token keyword, Token method",
-        "This    : Token keyword",
+        "Set     : Expr object, Token name, Expr value"
+            + " ; int cacheSlot = -1",
+        "SetIndex : Expr object, Token bracket, Expr index, Expr value",
+        "Super   : Token keyword, Token method ; int depth = -1, int slot = -1",
+        "This    : Token keyword ; int depth = -1, int slot = -1",
         "Unary : Token operator, Expr right",
-        "Variable : Token name",
-        "Assign : Token name, Expr value"
+        "Variable : Token name ; int depth = -1, int slot = -1",
+        "Assign : Token name, Expr value ; int depth = -1, int slot = -1"
     ));
 
     defineAst(outputDir, "Stmt", List.of(
-        "Block     : List<Stmt> statements",
-        "Class     : Token name, Expr.Variable superclass, List<Stmt.Function> methods",
+        "Block     : List<Stmt> statements ; int localCount = 0, boolean flat = false",
+        "Class     : Token name, Expr.Variable superclass, List<Stmt.Function> methods"
+            + " ; int slot = -1",
         "Expression: Expr expression",
         "Print     : Expr expression",
         "Return    : Token keyword, Expr value",
-        "Function  : Token name, List<Token> params, List<Stmt> body",
+        "Function  : Token name, List<Token> params, List<Stmt> body"
+            + " ; int slot = -1, int localCount = 0, int hotness = 0, JitCode compiled = null",
         "If        : Expr condition, Stmt thenBranch," + " Stmt elseBranch",
-        "Var       : Token name, Expr initializer",
+        "Var       : Token name, Expr initializer ; int slot = -1",
         "While     : Expr condition, Stmt body"
     ));
   }
@@ -57,8 +63,10 @@ public class GenerateAst {
     // AST Class
     for (String type : types) {
       String className = type.split(":")[0].trim();
-      String fields = type.split(":")[1].trim();
-      defineType(writer, baseName, className, fields);
+      String[] members = type.split(":")[1].split(";");
+      String fields = members[0].trim();
+      String annotations = members.length > 1 ? members[1].trim() : "";
+      defineType(writer, baseName, className, fields, annotations);
     }
 
     writer.println();
@@ -80,7 +88,7 @@ public class GenerateAst {
   }
 
   private static void defineType(PrintWriter writer, String baseName, String className,
-      String fieldList) {
+      String fieldList, String annotationList) {
     writer.println(" static class " + className + " extends " + baseName + " {");
 
     // 생성자
@@ -106,6 +114,13 @@ public class GenerateAst {
     for (String field : fields) {
       writer.println("   final " + field + ";");
     }
+
+    // 파싱 이후에 채워지는 필드
+    if (!annotationList.isEmpty()) {
+      for (String annotation : annotationList.split(", ")) {
+        writer.println("   " + annotation + ";");
+      }
+    }
     writer.println(" }");
   }
 